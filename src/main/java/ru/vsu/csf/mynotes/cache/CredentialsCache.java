@@ -0,0 +1,67 @@
+package ru.vsu.csf.mynotes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.configuration.property.CacheProperties;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+@Component
+public class CredentialsCache {
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<Credentials, Authentication> cache;
+    private final SecretKey secretKey;
+
+    public CredentialsCache(CacheProperties cacheProperties) {
+        var spec = cacheProperties.getCredentials();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaxSize())
+                .expireAfterWrite(spec.getTtl())
+                .build();
+        try {
+            this.secretKey = KeyGenerator.getInstance(MAC_ALGORITHM).generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new InternalErrorException("Алгоритм %s не поддерживается".formatted(MAC_ALGORITHM));
+        }
+    }
+
+    public Authentication get(String email, String password) {
+        return cache.getIfPresent(new Credentials(email, sign(password)));
+    }
+
+    public void put(String email, String password, Authentication authentication) {
+        cache.put(new Credentials(email, sign(password)), authentication);
+    }
+
+    public void invalidateUser(String email) {
+        cache.asMap().keySet().removeIf(credentials -> credentials.email().equals(email));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private String sign(String password) {
+        try {
+            var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(secretKey);
+            return HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new InternalErrorException("Не удалось вычислить подпись пароля");
+        }
+    }
+
+    private record Credentials(String email, String passwordMac) {
+    }
+
+}
@@ -0,0 +1,40 @@
+package ru.vsu.csf.mynotes.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.configuration.property.CacheProperties;
+
+@Component
+public class NoteOwnershipCache {
+
+    private final Cache<NoteOwnership, Boolean> cache;
+
+    public NoteOwnershipCache(CacheProperties cacheProperties) {
+        var spec = cacheProperties.getNoteOwnership();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(spec.getMaxSize())
+                .expireAfterWrite(spec.getTtl())
+                .build();
+    }
+
+    public boolean isAllowed(String email, Long noteId) {
+        return cache.getIfPresent(new NoteOwnership(email, noteId)) != null;
+    }
+
+    public void allow(String email, Long noteId) {
+        cache.put(new NoteOwnership(email, noteId), Boolean.TRUE);
+    }
+
+    public void invalidateUser(String email) {
+        cache.asMap().keySet().removeIf(ownership -> ownership.email().equals(email));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private record NoteOwnership(String email, Long noteId) {
+    }
+
+}
@@ -0,0 +1,4 @@
+package ru.vsu.csf.mynotes.codec;
+
+public record EncodedText(byte[] content, String codec) {
+}
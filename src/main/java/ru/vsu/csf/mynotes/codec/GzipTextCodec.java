@@ -0,0 +1,52 @@
+package ru.vsu.csf.mynotes.codec;
+
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Component
+public class GzipTextCodec implements TextCodec {
+
+    private static final String NAME = "gzip";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(byte[] text) {
+        var output = new ByteArrayOutputStream(text.length / 2 + 32);
+        try (var gzip = new FastGZIPOutputStream(output)) {
+            gzip.write(text);
+        } catch (IOException e) {
+            throw new InternalErrorException("Не удалось сжать текст заметки");
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] encoded) {
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new InternalErrorException("Не удалось распаковать текст заметки");
+        }
+    }
+
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+
+        FastGZIPOutputStream(ByteArrayOutputStream output) throws IOException {
+            super(output);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+    }
+
+}
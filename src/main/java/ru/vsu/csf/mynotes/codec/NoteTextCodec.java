@@ -0,0 +1,44 @@
+package ru.vsu.csf.mynotes.codec;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.configuration.property.TextCompressionProperties;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+public class NoteTextCodec {
+
+    private final List<TextCodec> codecs;
+    private final TextCompressionProperties textCompressionProperties;
+
+    public EncodedText encode(byte[] text) {
+        var codec = findCodec(textCompressionProperties.getCodec());
+        if (codec.isEmpty() || text.length < textCompressionProperties.getThreshold()) {
+            return new EncodedText(text, null);
+        }
+        var encoded = codec.get().encode(text);
+        return encoded.length < text.length
+                ? new EncodedText(encoded, codec.get().getName())
+                : new EncodedText(text, null);
+    }
+
+    public byte[] decode(byte[] content, String codec) {
+        if (content == null || codec == null) {
+            return content;
+        }
+        return findCodec(codec)
+                .orElseThrow(() -> new InternalErrorException("Неизвестный формат сжатия текста заметки " + codec))
+                .decode(content);
+    }
+
+    private Optional<TextCodec> findCodec(String name) {
+        return codecs.stream()
+                .filter(codec -> codec.getName().equals(name))
+                .findFirst();
+    }
+
+}
@@ -0,0 +1,11 @@
+package ru.vsu.csf.mynotes.codec;
+
+public interface TextCodec {
+
+    String getName();
+
+    byte[] encode(byte[] text);
+
+    byte[] decode(byte[] encoded);
+
+}
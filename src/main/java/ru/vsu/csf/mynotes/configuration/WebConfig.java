@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.multipart.PartEventHttpMessageReader;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+@Configuration
+public class WebConfig implements WebFluxConfigurer {
+
+    private static final DataSize PART_MAX_IN_MEMORY_SIZE = DataSize.ofKilobytes(256);
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        var partEventReader = new PartEventHttpMessageReader();
+        partEventReader.setMaxInMemorySize((int) PART_MAX_IN_MEMORY_SIZE.toBytes());
+        configurer.customCodecs().register(partEventReader);
+    }
+
+}
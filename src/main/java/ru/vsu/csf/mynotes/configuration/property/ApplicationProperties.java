@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Getter
 @Setter
 @Configuration
@@ -13,5 +16,10 @@ public class ApplicationProperties {
 
     private int maxFileAmount;
     private int maxFileSizeMb;
+    private int uploadBufferWindow;
+    private int notesPageSize;
+    private int maxNotesPageSize;
+    private int notesStreamFetchSize;
+    private List<String> adminEmails = new ArrayList<>();
 
 }
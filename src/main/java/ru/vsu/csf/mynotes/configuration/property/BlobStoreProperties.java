@@ -0,0 +1,31 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.blob-store")
+public class BlobStoreProperties {
+
+    private String type;
+    private String path;
+    private int readBufferSize;
+    private final Migration migration = new Migration();
+
+    @Getter
+    @Setter
+    public static class Migration {
+
+        private boolean enabled;
+        private int batchSize;
+        private Duration delay;
+
+    }
+
+}
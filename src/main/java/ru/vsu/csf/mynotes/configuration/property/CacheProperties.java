@@ -0,0 +1,28 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.cache")
+public class CacheProperties {
+
+    private final Spec noteOwnership = new Spec();
+    private final Spec credentials = new Spec();
+
+    @Getter
+    @Setter
+    public static class Spec {
+
+        private long maxSize;
+        private Duration ttl;
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.garbage-collector")
+public class GarbageCollectorProperties {
+
+    private boolean enabled;
+    private Duration delay;
+    private Duration gracePeriod;
+    private int batchSize;
+    private Duration batchDelay;
+    private int blobShardsPerRun;
+
+}
@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.in-memory-search")
+public class InMemorySearchProperties {
+
+    private boolean enabled;
+    private DataSize memoryBudget;
+    private Duration ttl;
+
+}
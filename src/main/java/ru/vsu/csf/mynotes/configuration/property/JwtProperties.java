@@ -0,0 +1,34 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+@Getter
+@Setter
+@Validated
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.jwt")
+public class JwtProperties {
+
+    private static final int MIN_SECRET_BYTES = 32;
+
+    @NotBlank(message = "Секрет для подписи токенов должен быть задан")
+    private String secret;
+    private String issuer;
+    private Duration accessTokenTtl;
+    private Duration refreshTokenTtl;
+
+    @AssertTrue(message = "Секрет для подписи токенов должен быть не короче 32 байт")
+    public boolean isSecretLongEnough() {
+        return secret == null || secret.getBytes(StandardCharsets.UTF_8).length >= MIN_SECRET_BYTES;
+    }
+
+}
@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.note-events")
+public class NoteEventsProperties {
+
+    private int bufferSize;
+    private BufferOverflowStrategy overflowStrategy;
+    private Duration heartbeat;
+
+}
@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.notifications")
+public class NotificationProperties {
+
+    private boolean enabled;
+    private Duration reconnectDelay;
+    private Duration maxReconnectDelay;
+
+}
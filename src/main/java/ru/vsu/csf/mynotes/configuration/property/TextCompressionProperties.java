@@ -0,0 +1,31 @@
+package ru.vsu.csf.mynotes.configuration.property;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "ru.vsu.csf.my-note.text-compression")
+public class TextCompressionProperties {
+
+    private String codec;
+    private int threshold;
+    private final Recompression recompression = new Recompression();
+
+    @Getter
+    @Setter
+    public static class Recompression {
+
+        private boolean enabled;
+        private Duration idlePeriod;
+        private int batchSize;
+        private Duration delay;
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package ru.vsu.csf.mynotes.configuration.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
+import ru.vsu.csf.mynotes.model.entity.User;
+import ru.vsu.csf.mynotes.repository.UserRepository;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdminRoleInitializer {
+
+    private final UserRepository userRepository;
+    private final ApplicationProperties applicationProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void grantAdminRole() {
+        var adminEmails = applicationProperties.getAdminEmails();
+        if (adminEmails.isEmpty()) {
+            return;
+        }
+        userRepository.updateRoleByEmailIn(adminEmails.toArray(String[]::new), User.ADMIN_ROLE)
+                .filter(updated -> updated > 0)
+                .subscribe(
+                        updated -> log.info("Роль администратора выдана пользователям: {}", updated),
+                        e -> log.error("Не удалось выдать роль администратора", e));
+    }
+
+}
@@ -0,0 +1,31 @@
+package ru.vsu.csf.mynotes.configuration.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.CredentialsCache;
+
+@RequiredArgsConstructor
+public class CachingAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final ReactiveAuthenticationManager delegate;
+    private final CredentialsCache credentialsCache;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)
+                || !(authentication.getCredentials() instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        var email = authentication.getName();
+        var cached = credentialsCache.get(email, password);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return delegate.authenticate(authentication)
+                .doOnNext(result -> credentialsCache.put(email, password, result));
+    }
+
+}
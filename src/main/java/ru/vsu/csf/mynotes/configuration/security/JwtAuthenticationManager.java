@@ -0,0 +1,33 @@
+package ru.vsu.csf.mynotes.configuration.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.exception.UnauthorizedException;
+import ru.vsu.csf.mynotes.service.TokenService;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class JwtAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final TokenService tokenService;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        return Mono.fromCallable(() -> {
+                    var token = (String) authentication.getCredentials();
+                    var jwt = tokenService.verifyAccessToken(token);
+                    return (Authentication) JwtAuthenticationToken.authenticated(
+                            token,
+                            jwt.getClaim(TokenService.USER_ID_CLAIM).asLong(),
+                            jwt.getSubject(),
+                            List.of(new SimpleGrantedAuthority(jwt.getClaim(TokenService.ROLE_CLAIM).asString())));
+                })
+                .onErrorMap(UnauthorizedException.class, e -> new BadCredentialsException(e.getMessage(), e));
+    }
+
+}
@@ -0,0 +1,54 @@
+package ru.vsu.csf.mynotes.configuration.security;
+
+import lombok.Getter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+@Getter
+public class JwtAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final String token;
+    private final Long userId;
+    private final String email;
+
+    private JwtAuthenticationToken(
+            String token,
+            Long userId,
+            String email,
+            Collection<? extends GrantedAuthority> authorities) {
+
+        super(authorities);
+        this.token = token;
+        this.userId = userId;
+        this.email = email;
+    }
+
+    public static JwtAuthenticationToken unauthenticated(String token) {
+        return new JwtAuthenticationToken(token, null, null, List.of());
+    }
+
+    public static JwtAuthenticationToken authenticated(
+            String token,
+            Long userId,
+            String email,
+            Collection<? extends GrantedAuthority> authorities) {
+
+        var authentication = new JwtAuthenticationToken(token, userId, email, authorities);
+        authentication.setAuthenticated(true);
+        return authentication;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return token;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return email;
+    }
+
+}
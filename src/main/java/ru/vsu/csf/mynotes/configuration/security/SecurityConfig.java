@@ -2,11 +2,18 @@ package ru.vsu.csf.mynotes.configuration.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import ru.vsu.csf.mynotes.cache.CredentialsCache;
+import ru.vsu.csf.mynotes.model.entity.User;
+import ru.vsu.csf.mynotes.service.TokenService;
 
 @Configuration
 @EnableWebFluxSecurity
@@ -14,13 +21,29 @@ import org.springframework.security.web.server.SecurityWebFilterChain;
 public class SecurityConfig {
 
     @Bean
-    public SecurityWebFilterChain configureSecWebFilterChain(ServerHttpSecurity http) {
+    public ReactiveAuthenticationManager authenticationManager(
+            UserDetailsService userDetailsService,
+            CredentialsCache credentialsCache) {
+
+        return new CachingAuthenticationManager(
+                new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService),
+                credentialsCache);
+    }
+
+    @Bean
+    public SecurityWebFilterChain configureSecWebFilterChain(ServerHttpSecurity http, TokenService tokenService) {
+        var jwtAuthenticationFilter = new AuthenticationWebFilter(new JwtAuthenticationManager(tokenService));
+        jwtAuthenticationFilter.setServerAuthenticationConverter(new JwtAuthenticationConverter());
+
         return http.cors(ServerHttpSecurity.CorsSpec::disable)
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(exchange ->
-                        exchange.pathMatchers("/**").permitAll()
+                        exchange.pathMatchers("/actuator/health").permitAll()
+                                .pathMatchers("/actuator/**").hasAuthority(User.ADMIN_ROLE)
+                                .pathMatchers("/**").permitAll()
                                 .pathMatchers("/api/v1/notes/**").authenticated())
                 .httpBasic(Customizer.withDefaults())
+                .addFilterAt(jwtAuthenticationFilter, SecurityWebFiltersOrder.AUTHENTICATION)
                 .build();
     }
 
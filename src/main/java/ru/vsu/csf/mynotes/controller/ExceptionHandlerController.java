@@ -1,6 +1,8 @@
 package ru.vsu.csf.mynotes.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.BindException;
 import org.springframework.validation.FieldError;
@@ -33,6 +35,18 @@ public class ExceptionHandlerController {
         return Mono.just(new ErrorResponse(e.getMessage()));
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(DataBufferLimitException.class)
+    public Mono<ErrorResponse> dataBufferLimitExceptionHandler(Exception e) {
+        return Mono.just(new ErrorResponse("Размер файла превышает допустимый лимит: " + e.getMessage()));
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(DecodingException.class)
+    public Mono<ErrorResponse> decodingExceptionHandler(Exception e) {
+        return Mono.just(new ErrorResponse("Не удалось прочитать тело запроса: " + e.getMessage()));
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler({MethodArgumentNotValidException.class, BindException.class})
     public Mono<ErrorResponse> methodArgumentNotValidExceptionHandler(BindException e) {
@@ -72,4 +86,10 @@ public class ExceptionHandlerController {
     public Mono<ErrorResponse> conflictExceptionHandler(Exception e) {
         return Mono.just(new ErrorResponse(e.getMessage()));
     }
+
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    @ExceptionHandler(PreconditionFailedException.class)
+    public Mono<ErrorResponse> preconditionFailedExceptionHandler(Exception e) {
+        return Mono.just(new ErrorResponse(e.getMessage()));
+    }
 }
@@ -3,19 +3,33 @@ package ru.vsu.csf.mynotes.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.PartEvent;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.model.dto.ChangeNoteNameRequest;
+import ru.vsu.csf.mynotes.model.dto.GetNoteChangesResponse;
 import ru.vsu.csf.mynotes.model.dto.GetNoteResponse;
+import ru.vsu.csf.mynotes.model.dto.GetNotesBatchRequest;
 import ru.vsu.csf.mynotes.model.dto.GetNotesResponse;
+import ru.vsu.csf.mynotes.model.dto.NoteChangeEvent;
+import ru.vsu.csf.mynotes.model.dto.NoteContentResponse;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextRequest;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextResponse;
 import ru.vsu.csf.mynotes.model.dto.RemoveAttachmentsRequest;
+import ru.vsu.csf.mynotes.model.dto.RemoveAttachmentsResponse;
+import ru.vsu.csf.mynotes.model.dto.SearchNotesResponse;
 import ru.vsu.csf.mynotes.service.AuthService;
+import ru.vsu.csf.mynotes.service.NoteEventService;
 import ru.vsu.csf.mynotes.service.NoteService;
+import ru.vsu.csf.mynotes.util.VersionUtils;
 
 import java.security.Principal;
 import java.util.List;
@@ -28,18 +42,81 @@ public class NoteController {
 
     private final NoteService noteService;
     private final AuthService authService;
+    private final NoteEventService noteEventService;
 
     @GetMapping("")
-    @Operation(summary = "Показывает все заметки пользователя")
-    public Mono<GetNotesResponse> getNotes(@AuthenticationPrincipal Principal principal) {
-        return authService.getUserId(principal.getName())
-                .flatMap(noteService::getNotes);
+    @Operation(summary = "Показывает заметки пользователя постранично")
+    public Mono<GetNotesResponse> getNotes(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal Principal principal) {
+
+        return authService.getUserId(principal)
+                .flatMap(userId -> noteService.getNotes(userId, limit, cursor));
+    }
+
+    @GetMapping(path = "", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    @Operation(summary = "Передает все заметки пользователя потоком")
+    public Flux<GetNoteResponse> streamNotes(@AuthenticationPrincipal Principal principal) {
+        return authService.getUserId(principal)
+                .flatMapMany(noteService::streamNotes);
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Ищет заметки пользователя по названию и тексту")
+    public Mono<SearchNotesResponse> searchNotes(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal Principal principal) {
+
+        return authService.getUserId(principal)
+                .flatMap(userId -> noteService.searchNotes(userId, query, limit, cursor));
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Подсказывает заметки пользователя по началу слов названия и текста")
+    public Mono<List<GetNoteResponse>> suggestNotes(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal Principal principal) {
+
+        return authService.getUserId(principal)
+                .flatMap(userId -> noteService.suggestNotes(userId, query, limit));
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Показывает заметки пользователя, измененные после указанного номера изменения")
+    public Mono<GetNoteChangesResponse> getNoteChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal Principal principal) {
+
+        return authService.getUserId(principal)
+                .flatMap(userId -> noteService.getNoteChanges(userId, since, limit));
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Передает изменения заметок пользователя в реальном времени")
+    public Flux<ServerSentEvent<NoteChangeEvent>> streamNoteChanges(@AuthenticationPrincipal Principal principal) {
+        return authService.getUserId(principal)
+                .flatMapMany(noteEventService::streamChanges);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Показывает несколько заметок пользователя за один запрос")
+    public Flux<NoteContentResponse> getNotesBatch(
+            @RequestBody GetNotesBatchRequest request,
+            @AuthenticationPrincipal Principal principal) {
+
+        return authService.getUserId(principal)
+                .flatMapMany(userId -> noteService.getNotesBatch(userId, request));
     }
 
     @PostMapping("")
     @Operation(summary = "Создает новую заметку")
     public Mono<Long> createNote(@AuthenticationPrincipal Principal principal) {
-        return authService.getUserId(principal.getName())
+        return authService.getUserId(principal)
                 .flatMap(noteService::createNote);
     }
 
@@ -52,9 +129,16 @@ public class NoteController {
 
     @PostMapping("/{id}/attach")
     @Operation(summary = "Прикрепляет заметку")
-    public Mono<Long> attachNote(@PathVariable Long id, @AuthenticationPrincipal Principal principal) {
+    public Mono<Long> attachNote(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @AuthenticationPrincipal Principal principal,
+            ServerHttpResponse response) {
+
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(noteService.attachNote(id));
+                .then(noteService.attachNote(id, VersionUtils.parseIfMatch(ifMatch)))
+                .doOnNext(version -> response.getHeaders().setETag(VersionUtils.toETag(version)))
+                .thenReturn(id);
     }
 
     @PostMapping("/{id}/name")
@@ -62,10 +146,14 @@ public class NoteController {
     public Mono<Long> changeNotesName(
             @PathVariable Long id,
             @RequestBody ChangeNoteNameRequest request,
-            @AuthenticationPrincipal Principal principal) {
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @AuthenticationPrincipal Principal principal,
+            ServerHttpResponse response) {
 
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(noteService.changeNoteName(id, request.getName()));
+                .then(noteService.changeNoteName(id, request.getName(), VersionUtils.parseIfMatch(ifMatch)))
+                .doOnNext(version -> response.getHeaders().setETag(VersionUtils.toETag(version)))
+                .thenReturn(id);
     }
 
     @GetMapping("/{id}/text")
@@ -73,10 +161,10 @@ public class NoteController {
     public Mono<Void> getNotesText(
             @PathVariable Long id,
             @AuthenticationPrincipal Principal principal,
-            ServerHttpResponse response) {
+            ServerWebExchange exchange) {
 
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(noteService.getNoteText(id, response));
+                .then(noteService.getNoteText(id, exchange));
     }
 
     @PostMapping(path = "/{id}/text", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -84,28 +172,47 @@ public class NoteController {
     public Mono<Long> changeNotesText(
             @PathVariable Long id,
             @RequestPart Mono<FilePart> text,
-            @AuthenticationPrincipal Principal principal) {
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @AuthenticationPrincipal Principal principal,
+            ServerHttpResponse response) {
+
+        var version = VersionUtils.parseIfMatch(ifMatch);
+        return authService.checkUsersPermission(principal.getName(), id)
+                .then(text.flatMap(it -> noteService.changeNoteText(id, it, version)))
+                .doOnNext(newVersion -> response.getHeaders().setETag(VersionUtils.toETag(newVersion)))
+                .thenReturn(id);
+    }
 
+    @PatchMapping("/{id}/text")
+    @Operation(summary = "Применяет изменения к тексту заметки")
+    public Mono<PatchNoteTextResponse> patchNotesText(
+            @PathVariable Long id,
+            @RequestBody PatchNoteTextRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @AuthenticationPrincipal Principal principal,
+            ServerHttpResponse response) {
+
+        var version = VersionUtils.parseIfMatch(ifMatch);
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(text.flatMap(it -> noteService.changeNoteText(id, it)));
+                .then(noteService.patchNoteText(id, request, version))
+                .doOnNext(patched -> response.getHeaders().setETag(VersionUtils.toETag(patched.getVersion())));
     }
 
     @PostMapping(path = "/{id}/attachment", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Добавляет вложения в заметку")
     public Mono<List<Long>> addNotesAttachment(
             @PathVariable Long id,
-            @RequestPart Flux<FilePart> attachments,
+            @RequestBody Flux<PartEvent> attachments,
             @AuthenticationPrincipal Principal principal) {
 
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(attachments.collectList()
-                        .flatMapMany(it -> noteService.addAttachmentsToNote(id, it))
-                        .collectList());
+                .thenMany(noteService.addAttachmentsToNote(id, attachments))
+                .collectList();
     }
 
     @DeleteMapping("/{id}/attachment")
     @Operation(summary = "Удаляет вложения из заметки")
-    public Mono<Void> removeAttachmentsFromNote(
+    public Mono<RemoveAttachmentsResponse> removeAttachmentsFromNote(
             @PathVariable Long id,
             @RequestBody RemoveAttachmentsRequest request,
             @AuthenticationPrincipal Principal principal) {
@@ -120,10 +227,10 @@ public class NoteController {
             @PathVariable Long id,
             @PathVariable Long attachmentId,
             @AuthenticationPrincipal Principal principal,
-            ServerHttpResponse response) {
+            ServerWebExchange exchange) {
 
         return authService.checkUsersPermission(principal.getName(), id)
-                .then(noteService.getNoteAttachment(id, attachmentId, response));
+                .then(noteService.getNoteAttachment(id, attachmentId, exchange));
     }
 
 }
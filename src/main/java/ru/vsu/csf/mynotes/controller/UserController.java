@@ -10,6 +10,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.model.dto.LoginUserRequest;
+import ru.vsu.csf.mynotes.model.dto.LoginUserResponse;
+import ru.vsu.csf.mynotes.model.dto.RefreshTokenRequest;
 import ru.vsu.csf.mynotes.model.dto.RegisterUserRequest;
 import ru.vsu.csf.mynotes.service.UserService;
 
@@ -31,8 +33,15 @@ public class UserController {
     @SecurityRequirements
     @PostMapping("/login")
     @Operation(summary = "Вход пользователя в систему")
-    public Mono<Long> loginUser(@RequestBody LoginUserRequest request) {
+    public Mono<LoginUserResponse> loginUser(@RequestBody LoginUserRequest request) {
         return userService.loginUser(request);
     }
 
+    @SecurityRequirements
+    @PostMapping("/refresh")
+    @Operation(summary = "Обновление токенов доступа")
+    public Mono<LoginUserResponse> refreshTokens(@RequestBody RefreshTokenRequest request) {
+        return userService.refreshTokens(request);
+    }
+
 }
@@ -0,0 +1,9 @@
+package ru.vsu.csf.mynotes.dictionary;
+
+public enum CacheInvalidationType {
+
+    NOTE_CREATED,
+    NOTE_CHANGED,
+    USER_CHANGED
+
+}
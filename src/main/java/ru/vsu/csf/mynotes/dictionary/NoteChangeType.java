@@ -0,0 +1,12 @@
+package ru.vsu.csf.mynotes.dictionary;
+
+public enum NoteChangeType {
+
+    CREATED,
+    RENAMED,
+    TEXT_CHANGED,
+    ATTACHED,
+    ATTACHMENTS_CHANGED,
+    RESYNC
+
+}
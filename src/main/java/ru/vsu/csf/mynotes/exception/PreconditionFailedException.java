@@ -0,0 +1,12 @@
+package ru.vsu.csf.mynotes.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException() {
+        super();
+    }
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
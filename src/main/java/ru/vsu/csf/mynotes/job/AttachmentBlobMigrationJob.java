@@ -0,0 +1,57 @@
+package ru.vsu.csf.mynotes.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.configuration.property.BlobStoreProperties;
+import ru.vsu.csf.mynotes.model.projection.AttachmentFile;
+import ru.vsu.csf.mynotes.repository.AttachmentRepository;
+import ru.vsu.csf.mynotes.storage.BlobStore;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ru.vsu.csf.my-note.blob-store.migration", name = "enabled", havingValue = "true")
+public class AttachmentBlobMigrationJob {
+
+    private final AttachmentRepository attachmentRepository;
+    private final BlobStore blobStore;
+    private final BlobStoreProperties blobStoreProperties;
+
+    @Scheduled(
+            initialDelayString = "#{@blobStoreProperties.migration.delay.toMillis()}",
+            fixedDelayString = "#{@blobStoreProperties.migration.delay.toMillis()}")
+    public Mono<Void> migrate() {
+        var batchSize = blobStoreProperties.getMigration().getBatchSize();
+        return migrateBatch(batchSize)
+                .expand(migrated -> migrated < batchSize ? Mono.empty() : migrateBatch(batchSize))
+                .reduce(0L, Long::sum)
+                .filter(migrated -> migrated > 0)
+                .doOnNext(migrated -> log.info("Перенесено вложений в хранилище файлов: {}", migrated))
+                .onErrorResume(e -> {
+                    log.error("Ошибка при переносе вложений в хранилище файлов", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> migrateBatch(int batchSize) {
+        return attachmentRepository.findNotMigratedFiles(batchSize)
+                .concatMap(this::migrateFile)
+                .count();
+    }
+
+    private Mono<Integer> migrateFile(AttachmentFile attachmentFile) {
+        return blobStore.store(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(attachmentFile.getFile())))
+                .flatMap(blob -> attachmentRepository.mergeIntoExisting(attachmentFile.getId(), blob.key())
+                        .filter(merged -> merged > 0)
+                        .switchIfEmpty(Mono.defer(() -> attachmentRepository.moveFileToBlobStore(
+                                attachmentFile.getId(), blob.key(), blob.size()))));
+    }
+
+}
@@ -0,0 +1,121 @@
+package ru.vsu.csf.mynotes.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.configuration.property.GarbageCollectorProperties;
+import ru.vsu.csf.mynotes.model.projection.DeletedAttachment;
+import ru.vsu.csf.mynotes.repository.AttachmentRepository;
+import ru.vsu.csf.mynotes.service.AttachmentService;
+import ru.vsu.csf.mynotes.storage.BlobStore;
+import ru.vsu.csf.mynotes.storage.StoredBlob;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ru.vsu.csf.my-note.garbage-collector", name = "enabled", havingValue = "true")
+public class AttachmentGarbageCollectorJob {
+
+    private static final String RECLAIMED_BYTES_METRIC = "mynotes.gc.reclaimed";
+    private static final String DELETED_ATTACHMENTS_METRIC = "mynotes.gc.attachments.deleted";
+    private static final String DELETED_BLOBS_METRIC = "mynotes.gc.blobs.deleted";
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentService attachmentService;
+    private final BlobStore blobStore;
+    private final GarbageCollectorProperties garbageCollectorProperties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger nextBlobShard = new AtomicInteger();
+
+    @Scheduled(
+            initialDelayString = "#{@garbageCollectorProperties.delay.toMillis()}",
+            fixedDelayString = "#{@garbageCollectorProperties.delay.toMillis()}")
+    public Mono<Void> collect() {
+        return Mono.fromSupplier(() -> Instant.now().minus(garbageCollectorProperties.getGracePeriod()))
+                .flatMap(threshold -> collectAttachments(threshold)
+                        .then(collectBlobs(threshold))
+                        .then(blobStore.deleteTemporaryFilesModifiedBefore(threshold)
+                                .doOnNext(this::recordReclaimedBytes)))
+                .onErrorResume(e -> {
+                    log.error("Ошибка при удалении неиспользуемых вложений", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> collectAttachments(Instant createdBefore) {
+        var batchSize = garbageCollectorProperties.getBatchSize();
+        return collectAttachmentBatch(createdBefore, batchSize)
+                .expand(deleted -> deleted < batchSize
+                        ? Mono.empty()
+                        : Mono.delay(garbageCollectorProperties.getBatchDelay())
+                                .then(collectAttachmentBatch(createdBefore, batchSize)))
+                .reduce(0L, Long::sum)
+                .filter(deleted -> deleted > 0)
+                .doOnNext(deleted -> log.info("Удалено неиспользуемых вложений: {}", deleted));
+    }
+
+    private Mono<Long> collectAttachmentBatch(Instant createdBefore, int batchSize) {
+        return attachmentRepository.deleteUnlinkedCreatedBefore(createdBefore, batchSize)
+                .collectList()
+                .map(deleted -> {
+                    recordReclaimedBytes(deleted.stream()
+                            .filter(attachment -> attachment.getBlobKey() == null)
+                            .mapToLong(DeletedAttachment::getSize)
+                            .sum());
+                    meterRegistry.counter(DELETED_ATTACHMENTS_METRIC).increment(deleted.size());
+                    return (long) deleted.size();
+                });
+    }
+
+    private Mono<Void> collectBlobs(Instant modifiedBefore) {
+        var shardsPerRun = Math.min(garbageCollectorProperties.getBlobShardsPerRun(), BlobStore.SHARD_COUNT);
+        return Flux.range(0, shardsPerRun)
+                .map(ignored -> nextBlobShard())
+                .concatMap(shard -> blobStore.findModifiedBefore(shard, modifiedBefore))
+                .buffer(garbageCollectorProperties.getBatchSize())
+                .concatMap(blobs -> collectBlobBatch(blobs, modifiedBefore)
+                        .delayElement(garbageCollectorProperties.getBatchDelay()))
+                .reduce(0L, Long::sum)
+                .filter(deleted -> deleted > 0)
+                .doOnNext(deleted -> log.info("Удалено файлов вложений без ссылок: {}", deleted))
+                .then();
+    }
+
+    private Mono<Long> collectBlobBatch(List<StoredBlob> blobs, Instant modifiedBefore) {
+        return attachmentService.deleteBlobsIfUnused(blobs.stream().map(StoredBlob::key).toList(), modifiedBefore)
+                .collect(Collectors.toSet())
+                .map(deletedBlobKeys -> {
+                    recordReclaimedBytes(blobs.stream()
+                            .filter(blob -> deletedBlobKeys.contains(blob.key()))
+                            .mapToLong(StoredBlob::size)
+                            .sum());
+                    meterRegistry.counter(DELETED_BLOBS_METRIC).increment(deletedBlobKeys.size());
+                    return (long) deletedBlobKeys.size();
+                });
+    }
+
+    private String nextBlobShard() {
+        return "%02x".formatted(nextBlobShard.getAndUpdate(shard -> (shard + 1) % BlobStore.SHARD_COUNT));
+    }
+
+    private void recordReclaimedBytes(long bytes) {
+        Counter.builder(RECLAIMED_BYTES_METRIC)
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+}
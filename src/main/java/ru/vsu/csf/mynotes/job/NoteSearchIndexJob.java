@@ -0,0 +1,58 @@
+package ru.vsu.csf.mynotes.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.codec.NoteTextCodec;
+import ru.vsu.csf.mynotes.configuration.property.SearchIndexProperties;
+import ru.vsu.csf.mynotes.model.projection.NoteText;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+import ru.vsu.csf.mynotes.util.PlainTextUtils;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ru.vsu.csf.my-note.search-index", name = "enabled", havingValue = "true")
+public class NoteSearchIndexJob {
+
+    private final NoteRepository noteRepository;
+    private final NoteTextCodec noteTextCodec;
+    private final SearchIndexProperties searchIndexProperties;
+
+    @Scheduled(
+            initialDelayString = "#{@searchIndexProperties.delay.toMillis()}",
+            fixedDelayString = "#{@searchIndexProperties.delay.toMillis()}")
+    public Mono<Void> index() {
+        var batchSize = searchIndexProperties.getBatchSize();
+        return indexBatch(batchSize)
+                .expand(indexed -> indexed < batchSize ? Mono.empty() : indexBatch(batchSize))
+                .reduce(0L, Long::sum)
+                .filter(indexed -> indexed > 0)
+                .doOnNext(indexed -> log.info("Проиндексировано заметок для поиска: {}", indexed))
+                .onErrorResume(e -> {
+                    log.error("Ошибка при индексации заметок для поиска", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> indexBatch(int batchSize) {
+        return noteRepository.findNotIndexedTexts(batchSize)
+                .concatMap(this::indexNote)
+                .count();
+    }
+
+    private Mono<Integer> indexNote(NoteText noteText) {
+        return Mono.fromCallable(() -> PlainTextUtils.fromHtml(
+                        noteTextCodec.decode(noteText.getText(), noteText.getTextCodec())))
+                .onErrorResume(e -> {
+                    log.warn("Не удалось извлечь текст заметки с ИД {} для поиска", noteText.getId(), e);
+                    return Mono.just("");
+                })
+                .flatMap(plainText -> noteRepository.updatePlainText(noteText.getId(), plainText));
+    }
+
+}
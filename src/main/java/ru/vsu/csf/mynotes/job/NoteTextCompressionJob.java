@@ -0,0 +1,63 @@
+package ru.vsu.csf.mynotes.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.codec.NoteTextCodec;
+import ru.vsu.csf.mynotes.configuration.property.TextCompressionProperties;
+import ru.vsu.csf.mynotes.model.projection.PatchedText;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+
+import java.time.Instant;
+import java.util.Objects;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(
+        prefix = "ru.vsu.csf.my-note.text-compression.recompression",
+        name = "enabled",
+        havingValue = "true")
+public class NoteTextCompressionJob {
+
+    private final NoteRepository noteRepository;
+    private final NoteTextCodec noteTextCodec;
+    private final TextCompressionProperties textCompressionProperties;
+
+    @Scheduled(
+            initialDelayString = "#{@textCompressionProperties.recompression.delay.toMillis()}",
+            fixedDelayString = "#{@textCompressionProperties.recompression.delay.toMillis()}")
+    public Mono<Void> compress() {
+        var recompression = textCompressionProperties.getRecompression();
+        return Mono.fromSupplier(() -> Instant.now().minus(recompression.getIdlePeriod()))
+                .flatMap(patchedBefore -> compressBatch(patchedBefore, recompression.getBatchSize())
+                        .expand(processed -> processed < recompression.getBatchSize()
+                                ? Mono.empty()
+                                : compressBatch(patchedBefore, recompression.getBatchSize()))
+                        .reduce(0L, Long::sum))
+                .filter(processed -> processed > 0)
+                .doOnNext(processed -> log.info("Сжато текстов заметок после редактирования: {}", processed))
+                .onErrorResume(e -> {
+                    log.error("Ошибка при сжатии текстов заметок", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> compressBatch(Instant patchedBefore, int batchSize) {
+        return noteRepository.findPatchedTexts(patchedBefore, batchSize)
+                .concatMap(this::compressText)
+                .count();
+    }
+
+    private Mono<Integer> compressText(PatchedText patchedText) {
+        return Mono.fromCallable(() -> noteTextCodec.encode(
+                        Objects.requireNonNullElse(patchedText.getText(), new byte[0])))
+                .flatMap(encoded -> noteRepository.updateCompressedText(
+                        patchedText.getId(), encoded.content(), encoded.codec(), patchedText.getTextHash()));
+    }
+
+}
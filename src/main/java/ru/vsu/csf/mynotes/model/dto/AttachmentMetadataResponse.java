@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import ru.vsu.csf.mynotes.dictionary.FileExtension;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class AttachmentMetadataResponse {
+
+    private Long id;
+    private FileExtension extension;
+    private Long size;
+    private String hash;
+
+}
@@ -0,0 +1,22 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import ru.vsu.csf.mynotes.dictionary.CacheInvalidationType;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class CacheInvalidationEvent {
+
+    private CacheInvalidationType type;
+    private Long noteId;
+    private Long userId;
+    private String email;
+    private String origin;
+    private Long publishedAt;
+
+}
@@ -0,0 +1,22 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class GetNoteChangesResponse {
+
+    private List<NoteContentResponse> notes;
+
+    private Long changeSeq;
+
+    private Boolean hasMore;
+
+}
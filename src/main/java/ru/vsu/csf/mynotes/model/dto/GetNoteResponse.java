@@ -16,7 +16,9 @@ public class GetNoteResponse {
     private Long id;
     private String name;
     private Boolean isAttached;
+    private Long version;
 
     private List<Long> attachments;
+    private List<AttachmentMetadataResponse> attachmentDetails;
 
 }
@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class GetNotesBatchRequest {
+
+    private List<Long> ids = new ArrayList<>();
+
+    private boolean includeText;
+
+}
@@ -15,4 +15,6 @@ public class GetNotesResponse {
 
     private List<GetNoteResponse> notes;
 
+    private String nextCursor;
+
 }
@@ -0,0 +1,19 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class LoginUserResponse {
+
+    private Long id;
+    private String accessToken;
+    private String refreshToken;
+    private Long expiresIn;
+
+}
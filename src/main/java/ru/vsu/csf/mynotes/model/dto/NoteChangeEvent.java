@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteChangeEvent {
+
+    private Long userId;
+    private Long noteId;
+    private Long changeSeq;
+    private NoteChangeType type;
+
+}
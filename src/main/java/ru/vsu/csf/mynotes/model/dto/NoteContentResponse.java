@@ -0,0 +1,27 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteContentResponse {
+
+    private Long id;
+    private String name;
+    private Boolean isAttached;
+    private Long version;
+    private Long changeSeq;
+
+    private List<AttachmentMetadataResponse> attachmentDetails;
+
+    private String textHash;
+    private String text;
+
+}
@@ -0,0 +1,26 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteSearchResult {
+
+    private Long id;
+
+    private String name;
+
+    private Boolean isAttached;
+
+    private Long version;
+
+    private Float rank;
+
+    private String snippet;
+
+}
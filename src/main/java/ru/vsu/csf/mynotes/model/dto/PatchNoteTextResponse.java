@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class PatchNoteTextResponse {
+
+    private Long id;
+
+    private String textHash;
+
+    private Long version;
+
+}
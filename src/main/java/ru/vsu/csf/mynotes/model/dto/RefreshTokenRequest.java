@@ -0,0 +1,18 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshTokenRequest {
+
+    @NotBlank(message = "Поле Токен обновления не должно быть пустым")
+    private String refreshToken;
+
+}
@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class RemoveAttachmentsResponse {
+
+    private List<Long> removedAttachments;
+
+    private List<Long> missingAttachments;
+
+}
@@ -18,7 +18,9 @@ public class Attachment {
     @Id
     private Long id;
 
-    private byte[] file;
+    private String blobKey;
+
+    private Long size;
 
     private FileExtension extension;
 
@@ -3,6 +3,7 @@ package ru.vsu.csf.mynotes.model.entity;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 @Getter
@@ -21,8 +22,15 @@ public class Note {
 
     private byte[] text;
 
+    private String textHash;
+
+    private String textCodec;
+
     private boolean isAttached;
 
     private Long userId;
 
+    @Version
+    private Long version;
+
 }
@@ -20,6 +20,9 @@ import java.util.List;
 @Table(name = "user_info")
 public class User implements UserDetails {
 
+    public static final String USER_ROLE = "USER";
+    public static final String ADMIN_ROLE = "ADMIN";
+
     @Id
     private Long id;
 
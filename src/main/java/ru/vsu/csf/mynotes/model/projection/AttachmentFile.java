@@ -0,0 +1,18 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentFile {
+
+    private Long id;
+
+    private byte[] file;
+
+}
@@ -0,0 +1,20 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class DeletedAttachment {
+
+    private String blobKey;
+
+    private long size;
+
+}
@@ -0,0 +1,36 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteChange {
+
+    private Long id;
+
+    private String name;
+
+    private boolean isAttached;
+
+    private Long version;
+
+    private String textHash;
+
+    private Long changeSeq;
+
+    private Long[] attachmentIds;
+
+    private String[] attachmentExtensions;
+
+    private Long[] attachmentSizes;
+
+    private String[] attachmentHashes;
+
+}
@@ -0,0 +1,40 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteContent {
+
+    private Long id;
+
+    private String name;
+
+    private boolean isAttached;
+
+    private Long version;
+
+    private Long changeSeq;
+
+    private String textHash;
+
+    private byte[] text;
+
+    private String textCodec;
+
+    private Long[] attachmentIds;
+
+    private String[] attachmentExtensions;
+
+    private Long[] attachmentSizes;
+
+    private String[] attachmentHashes;
+
+}
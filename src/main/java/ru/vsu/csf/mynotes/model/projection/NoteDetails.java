@@ -0,0 +1,32 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteDetails {
+
+    private Long id;
+
+    private String name;
+
+    private boolean isAttached;
+
+    private Long version;
+
+    private Long[] attachmentIds;
+
+    private String[] attachmentExtensions;
+
+    private Long[] attachmentSizes;
+
+    private String[] attachmentHashes;
+
+}
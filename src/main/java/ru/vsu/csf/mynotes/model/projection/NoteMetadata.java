@@ -0,0 +1,28 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteMetadata {
+
+    private Long id;
+
+    private String name;
+
+    private boolean isAttached;
+
+    private Long version;
+
+    private String textHash;
+
+    private String textCodec;
+
+}
@@ -0,0 +1,26 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class NoteSearchDocument {
+
+    private Long id;
+
+    private String name;
+
+    private boolean isAttached;
+
+    private Long version;
+
+    private String plainText;
+
+}
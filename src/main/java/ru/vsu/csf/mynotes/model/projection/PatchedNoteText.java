@@ -0,0 +1,24 @@
+package ru.vsu.csf.mynotes.model.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class PatchedNoteText {
+
+    private Long userId;
+
+    private String textHash;
+
+    private String plainText;
+
+    private Long version;
+
+}
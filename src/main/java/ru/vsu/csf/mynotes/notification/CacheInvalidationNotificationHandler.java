@@ -0,0 +1,37 @@
+package ru.vsu.csf.mynotes.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+import ru.vsu.csf.mynotes.model.dto.CacheInvalidationEvent;
+import ru.vsu.csf.mynotes.service.CacheInvalidationService;
+
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationNotificationHandler implements NotificationHandler {
+
+    private final CacheInvalidationService cacheInvalidationService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getChannel() {
+        return CacheInvalidationService.CHANNEL;
+    }
+
+    @Override
+    public void handle(String payload) {
+        try {
+            cacheInvalidationService.apply(objectMapper.readValue(payload, CacheInvalidationEvent.class));
+        } catch (JsonProcessingException e) {
+            throw new InternalErrorException("Некорректное событие инвалидации кеша");
+        }
+    }
+
+    @Override
+    public void onReconnect() {
+        cacheInvalidationService.invalidateAll();
+    }
+
+}
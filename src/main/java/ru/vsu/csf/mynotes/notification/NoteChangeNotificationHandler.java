@@ -0,0 +1,39 @@
+package ru.vsu.csf.mynotes.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+import ru.vsu.csf.mynotes.model.dto.NoteChangeEvent;
+import ru.vsu.csf.mynotes.service.NoteEventService;
+
+@Component
+@RequiredArgsConstructor
+public class NoteChangeNotificationHandler implements NotificationHandler {
+
+    public static final String CHANNEL = "note_changes";
+
+    private final NoteEventService noteEventService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getChannel() {
+        return CHANNEL;
+    }
+
+    @Override
+    public void handle(String payload) {
+        try {
+            noteEventService.publish(objectMapper.readValue(payload, NoteChangeEvent.class));
+        } catch (JsonProcessingException e) {
+            throw new InternalErrorException("Некорректное уведомление об изменении заметки");
+        }
+    }
+
+    @Override
+    public void onReconnect() {
+        noteEventService.requestResync();
+    }
+
+}
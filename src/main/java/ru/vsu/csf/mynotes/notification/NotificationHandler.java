@@ -0,0 +1,11 @@
+package ru.vsu.csf.mynotes.notification;
+
+public interface NotificationHandler {
+
+    String getChannel();
+
+    void handle(String payload);
+
+    void onReconnect();
+
+}
@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationPublisher {
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Void> notify(String channel, String payload) {
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", channel)
+                .bind("payload", payload)
+                .then();
+    }
+
+}
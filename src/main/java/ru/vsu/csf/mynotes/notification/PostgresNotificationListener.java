@@ -0,0 +1,128 @@
+package ru.vsu.csf.mynotes.notification;
+
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import ru.vsu.csf.mynotes.configuration.property.NotificationProperties;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "ru.vsu.csf.my-note.notifications", name = "enabled", havingValue = "true")
+public class PostgresNotificationListener {
+
+    private final ConnectionFactory connectionFactory;
+    private final NotificationProperties notificationProperties;
+    private final Map<String, NotificationHandler> handlers;
+    private final AtomicBoolean connectedBefore = new AtomicBoolean();
+    private Disposable subscription;
+
+    public PostgresNotificationListener(
+            ConnectionFactory connectionFactory,
+            NotificationProperties notificationProperties,
+            List<NotificationHandler> handlers) {
+        this.connectionFactory = unwrapPool(connectionFactory);
+        this.notificationProperties = notificationProperties;
+        this.handlers = handlers.stream()
+                .collect(Collectors.toMap(NotificationHandler::getChannel, Function.identity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        subscription = listen()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, notificationProperties.getReconnectDelay())
+                        .maxBackoff(notificationProperties.getMaxReconnectDelay())
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> log.warn(
+                                "Потеряно соединение для получения уведомлений, переподключение",
+                                signal.failure())))
+                .subscribe(this::dispatch);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private Flux<Notification> listen() {
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> {
+                    var postgresqlConnection = unwrap(connection);
+                    return Flux.fromIterable(handlers.keySet())
+                            .concatMap(channel -> postgresqlConnection.createStatement(listenStatement(channel))
+                                    .execute()
+                                    .flatMap(PostgresqlResult::getRowsUpdated))
+                            .then(Mono.fromRunnable(this::onConnected))
+                            .thenMany(postgresqlConnection.getNotifications())
+                            .concatWith(Mono.error(() ->
+                                    new InternalErrorException("Соединение для получения уведомлений закрыто")));
+                },
+                Connection::close);
+    }
+
+    private void onConnected() {
+        log.info("Подписка на каналы {} установлена", handlers.keySet());
+        if (connectedBefore.getAndSet(true)) {
+            handlers.values().forEach(NotificationHandler::onReconnect);
+        }
+    }
+
+    private void dispatch(Notification notification) {
+        var handler = handlers.get(notification.getName());
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.handle(notification.getParameter());
+        } catch (RuntimeException e) {
+            log.warn("Ошибка обработки уведомления из канала {}: {}",
+                    notification.getName(), notification.getParameter(), e);
+        }
+    }
+
+    private static String listenStatement(String channel) {
+        return "LISTEN \"" + channel.replace("\"", "\"\"") + "\"";
+    }
+
+    private static ConnectionFactory unwrapPool(ConnectionFactory connectionFactory) {
+        var unwrapped = connectionFactory;
+        while (unwrapped instanceof Wrapped<?> wrapped && wrapped.unwrap() instanceof ConnectionFactory delegate) {
+            unwrapped = delegate;
+        }
+        return unwrapped;
+    }
+
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object unwrapped = connection;
+        while (!(unwrapped instanceof PostgresqlConnection) && unwrapped instanceof Wrapped<?> wrapped) {
+            unwrapped = wrapped.unwrap();
+        }
+        if (unwrapped instanceof PostgresqlConnection postgresqlConnection) {
+            return postgresqlConnection;
+        }
+        throw new InternalErrorException("Получение уведомлений поддерживается только для PostgreSQL");
+    }
+
+}
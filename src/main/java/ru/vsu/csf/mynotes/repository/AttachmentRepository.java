@@ -1,9 +1,96 @@
 package ru.vsu.csf.mynotes.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.model.entity.Attachment;
+import ru.vsu.csf.mynotes.model.projection.AttachmentFile;
+import ru.vsu.csf.mynotes.model.projection.DeletedAttachment;
+
+import java.time.Instant;
 
 @Repository
 public interface AttachmentRepository extends R2dbcRepository<Attachment, Long> {
+
+    @Query("""
+            WITH deleted AS (
+                DELETE FROM attachment a
+                WHERE a.id = ANY(CAST(:ids AS INTEGER[]))
+                    AND NOT EXISTS(SELECT 1 FROM note_attachments na WHERE na.attachment_id = a.id)
+                RETURNING a.blob_key)
+            SELECT DISTINCT blob_key FROM deleted WHERE blob_key IS NOT NULL""")
+    Flux<String> deleteUnlinkedByIds(Long[] ids);
+
+    @Query("""
+            WITH candidate AS (
+                SELECT a.id FROM attachment a
+                WHERE a.created_at < :createdBefore
+                    AND NOT EXISTS(SELECT 1 FROM note_attachments na WHERE na.attachment_id = a.id)
+                ORDER BY a.id
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            DELETE FROM attachment a
+            USING candidate c
+            WHERE a.id = c.id
+            RETURNING a.blob_key, COALESCE(a.size, octet_length(a.file), 0) AS size""")
+    Flux<DeletedAttachment> deleteUnlinkedCreatedBefore(Instant createdBefore, int limit);
+
+    @Query("SELECT DISTINCT blob_key FROM attachment WHERE blob_key = ANY(CAST(:blobKeys AS VARCHAR[]))")
+    Flux<String> findUsedBlobKeys(String[] blobKeys);
+
+    @Query("""
+            INSERT INTO attachment(blob_key, size, extension)
+            SELECT * FROM unnest(
+                CAST(:blobKeys AS VARCHAR[]),
+                CAST(:sizes AS BIGINT[]),
+                CAST(:extensions AS VARCHAR[]))
+            ON CONFLICT (blob_key, extension) DO UPDATE SET blob_key = EXCLUDED.blob_key
+            RETURNING id, blob_key, size, extension""")
+    Flux<Attachment> upsertAll(String[] blobKeys, Long[] sizes, String[] extensions);
+
+    @Query("SELECT id, file FROM attachment WHERE id = :id")
+    Mono<AttachmentFile> findFileById(Long id);
+
+    @Query("""
+            SELECT id, substring(file FROM CAST(:from AS INTEGER) FOR CAST(:length AS INTEGER)) AS file
+            FROM attachment
+            WHERE id = :id""")
+    Mono<AttachmentFile> findFilePartById(Long id, long from, long length);
+
+    @Query("""
+            SELECT id, file FROM attachment
+            WHERE blob_key IS NULL AND file IS NOT NULL
+            ORDER BY id
+            LIMIT :limit""")
+    Flux<AttachmentFile> findNotMigratedFiles(int limit);
+
+    @Modifying
+    @Query("""
+            WITH target AS (
+                SELECT t.id FROM attachment t
+                JOIN attachment s ON s.extension = t.extension
+                WHERE s.id = :id AND t.blob_key = :blobKey),
+            relinked AS (
+                UPDATE note_attachments na SET attachment_id = (SELECT id FROM target)
+                WHERE na.attachment_id = :id AND EXISTS(SELECT 1 FROM target)
+                    AND NOT EXISTS(SELECT 1 FROM note_attachments o
+                        WHERE o.note_id = na.note_id AND o.attachment_id = (SELECT id FROM target))),
+            unlinked AS (
+                DELETE FROM note_attachments na
+                WHERE na.attachment_id = :id
+                    AND EXISTS(SELECT 1 FROM note_attachments o
+                        WHERE o.note_id = na.note_id AND o.attachment_id = (SELECT id FROM target)))
+            DELETE FROM attachment
+            WHERE id = :id AND EXISTS(SELECT 1 FROM target)""")
+    Mono<Integer> mergeIntoExisting(Long id, String blobKey);
+
+    @Modifying
+    @Query("""
+            UPDATE attachment SET blob_key = :blobKey, size = :size, file = NULL
+            WHERE id = :id AND blob_key IS NULL""")
+    Mono<Integer> moveFileToBlobStore(Long id, String blobKey, Long size);
+
 }
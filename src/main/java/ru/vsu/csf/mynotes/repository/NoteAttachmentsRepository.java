@@ -1,19 +1,27 @@
 package ru.vsu.csf.mynotes.repository;
 
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.model.entity.NoteAttachments;
 
-import java.util.List;
-
 @Repository
 public interface NoteAttachmentsRepository extends R2dbcRepository<NoteAttachments, Long> {
 
-    Mono<Void> deleteByNoteIdAndAttachmentIdIn(Long noteId, List<Long> attachmentId);
+    @Query("""
+            INSERT INTO note_attachments(note_id, attachment_id)
+            SELECT :noteId, unnest(CAST(:attachmentIds AS INTEGER[]))
+            ON CONFLICT (note_id, attachment_id) DO NOTHING
+            RETURNING attachment_id""")
+    Flux<Long> insertAll(Long noteId, Long[] attachmentIds);
 
-    Flux<NoteAttachments> findAllByNoteId(Long noteId);
+    @Query("""
+            DELETE FROM note_attachments
+            WHERE note_id = :noteId AND attachment_id = ANY(CAST(:attachmentIds AS INTEGER[]))
+            RETURNING attachment_id""")
+    Flux<Long> deleteAllByNoteId(Long noteId, Long[] attachmentIds);
 
     Mono<NoteAttachments> findByNoteIdAndAttachmentId(Long noteId, Long attachmentId);
 
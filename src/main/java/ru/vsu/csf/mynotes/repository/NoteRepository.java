@@ -1,16 +1,324 @@
 package ru.vsu.csf.mynotes.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
 import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.projection.NoteChange;
+import ru.vsu.csf.mynotes.model.projection.NoteContent;
+import ru.vsu.csf.mynotes.model.projection.NoteDetails;
+import ru.vsu.csf.mynotes.model.projection.NoteMetadata;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchDocument;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchHit;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+import ru.vsu.csf.mynotes.model.projection.NoteText;
+import ru.vsu.csf.mynotes.model.projection.NoteVersion;
+import ru.vsu.csf.mynotes.model.projection.PatchedNoteText;
+import ru.vsu.csf.mynotes.model.projection.PatchedText;
+
+import java.time.Instant;
 
 @Repository
-public interface NoteRepository extends R2dbcRepository<Note, Long> {
+public interface NoteRepository extends R2dbcRepository<Note, Long>, NoteStreamRepository {
 
     Mono<Note> findByIdAndUserId(Long id, Long userId);
 
-    Flux<Note> findByUserId(Long userId);
+    @Query("""
+            SELECT EXISTS(
+                SELECT 1 FROM note n
+                JOIN user_info u ON u.id = n.user_id
+                WHERE n.id = :id AND u.email = :email)""")
+    Mono<Boolean> existsByIdAndUserEmail(Long id, String email);
+
+    @Query("""
+            SELECT id, name, is_attached, version FROM note
+            WHERE user_id = :userId
+            ORDER BY is_attached DESC, id
+            LIMIT :limit""")
+    Flux<NoteSummary> findSummariesByUserId(Long userId, int limit);
+
+    @Query("""
+            SELECT id, name, is_attached, version FROM note
+            WHERE user_id = :userId
+                AND (is_attached < :isAttached OR (is_attached = :isAttached AND id > :id))
+            ORDER BY is_attached DESC, id
+            LIMIT :limit""")
+    Flux<NoteSummary> findSummariesByUserIdAfter(Long userId, boolean isAttached, Long id, int limit);
+
+    @Query("""
+            SELECT h.id, h.name, h.is_attached, h.version, h.rank,
+                ts_headline('russian', COALESCE(n.plain_text, ''), websearch_to_tsquery('russian', :query),
+                    'MaxFragments=2, MaxWords=20, MinWords=5') AS snippet
+            FROM (
+                SELECT n.id, n.name, n.is_attached, n.version, ts_rank(n.search_document, q.query) AS rank
+                FROM note n, websearch_to_tsquery('russian', :query) AS q(query)
+                WHERE n.user_id = :userId AND n.search_document @@ q.query
+                ORDER BY rank DESC, n.id
+                LIMIT :limit) h
+            JOIN note n ON n.id = h.id
+            ORDER BY h.rank DESC, h.id""")
+    Flux<NoteSearchHit> searchByUserId(Long userId, String query, int limit);
+
+    @Query("""
+            SELECT h.id, h.name, h.is_attached, h.version, h.rank,
+                ts_headline('russian', COALESCE(n.plain_text, ''), websearch_to_tsquery('russian', :query),
+                    'MaxFragments=2, MaxWords=20, MinWords=5') AS snippet
+            FROM (
+                SELECT n.id, n.name, n.is_attached, n.version, r.rank
+                FROM note n, websearch_to_tsquery('russian', :query) AS q(query),
+                    LATERAL (SELECT ts_rank(n.search_document, q.query) AS rank) r
+                WHERE n.user_id = :userId AND n.search_document @@ q.query
+                    AND (r.rank < :rank OR (r.rank = :rank AND n.id > :id))
+                ORDER BY r.rank DESC, n.id
+                LIMIT :limit) h
+            JOIN note n ON n.id = h.id
+            ORDER BY h.rank DESC, h.id""")
+    Flux<NoteSearchHit> searchByUserIdAfter(Long userId, String query, float rank, Long id, int limit);
+
+    @Query("SELECT id, name, is_attached, version, plain_text FROM note WHERE user_id = :userId")
+    Flux<NoteSearchDocument> findSearchDocumentsByUserId(Long userId);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id, COALESCE(n.text, ''::bytea) AS text
+                FROM note n
+                WHERE n.id = :id
+                    AND n.version = :version
+                    AND n.text_codec IS NULL
+                    AND octet_length(COALESCE(n.text, ''::bytea)) >= :tailStart
+                    AND NOT EXISTS (
+                        SELECT 1
+                        FROM unnest(CAST(:positions AS INTEGER[]), CAST(:lengths AS INTEGER[])) AS b(pos, len),
+                            LATERAL (VALUES (b.pos), (b.pos + b.len)) AS e(boundary)
+                        WHERE e.boundary < octet_length(COALESCE(n.text, ''::bytea))
+                            AND (get_byte(n.text, e.boundary) & 192) = 128)
+                FOR UPDATE OF n),
+            patched AS (
+                SELECT t.id, t.user_id, (
+                    SELECT string_agg(p.segment, ''::bytea ORDER BY p.ord)
+                    FROM (
+                        SELECT o.ord,
+                            substring(t.text FROM o.prev_end + 1 FOR o.pos - o.prev_end)
+                                || substring(:data FROM o.data_start + 1 FOR o.data_length) AS segment
+                        FROM (
+                            SELECT op.ord, op.pos, op.data_length,
+                                CAST(lag(op.pos + op.len, 1, 0) OVER (ORDER BY op.ord) AS INTEGER) AS prev_end,
+                                CAST(sum(op.data_length) OVER (ORDER BY op.ord) - op.data_length AS INTEGER)
+                                    AS data_start
+                            FROM unnest(
+                                CAST(:positions AS INTEGER[]),
+                                CAST(:lengths AS INTEGER[]),
+                                CAST(:dataLengths AS INTEGER[])) WITH ORDINALITY AS op(pos, len, data_length, ord)) o
+                        UNION ALL
+                        SELECT 2147483647, substring(t.text FROM :tailStart + 1)) p) AS text
+                FROM target t),
+            plain AS (
+                SELECT p.id, p.user_id, p.text, replace(replace(replace(replace(replace(replace(
+                    regexp_replace(convert_from(p.text, 'UTF8'), '<[^>]*>', ' ', 'g'),
+                    '&lt;', '<'), '&gt;', '>'), '&quot;', '"'), '&#39;', ''''), '&nbsp;', ' '), '&amp;', '&')
+                    AS plain_text
+                FROM patched p),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM plain p
+                WHERE u.id = p.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', p.id, 'changeSeq', u.change_seq, 'type', 'TEXT_CHANGED')::text))
+            UPDATE note n SET text = p.text, text_hash = encode(sha256(p.text), 'hex'), version = n.version + 1,
+                change_seq = seq.change_seq, text_patched_at = now(), plain_text = p.plain_text,
+                text_vector = setweight(to_tsvector('russian', p.plain_text), 'B')
+            FROM plain p, seq
+            WHERE n.id = p.id
+            RETURNING n.user_id, n.text_hash, n.plain_text, n.version""")
+    Mono<PatchedNoteText> patchText(
+            Long id,
+            Long version,
+            Integer[] positions,
+            Integer[] lengths,
+            Integer[] dataLengths,
+            byte[] data,
+            int tailStart);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id FROM note n
+                WHERE n.id = :id AND (CAST(:version AS BIGINT) IS NULL OR n.version = :version)
+                FOR UPDATE),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM target t
+                WHERE u.id = t.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', t.id, 'changeSeq', u.change_seq, 'type', 'RENAMED')::text))
+            UPDATE note n SET name = :name, version = n.version + 1, change_seq = seq.change_seq
+            FROM target t, seq
+            WHERE n.id = t.id
+            RETURNING n.user_id, n.version""")
+    Mono<NoteVersion> updateName(Long id, String name, Long version);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id FROM note n
+                WHERE n.id = :id AND (CAST(:version AS BIGINT) IS NULL OR n.version = :version)
+                FOR UPDATE),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM target t
+                WHERE u.id = t.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', t.id, 'changeSeq', u.change_seq, 'type', 'ATTACHED')::text))
+            UPDATE note n SET is_attached = :isAttached, version = n.version + 1, change_seq = seq.change_seq
+            FROM target t, seq
+            WHERE n.id = t.id
+            RETURNING n.user_id, n.version""")
+    Mono<NoteVersion> updateAttached(Long id, boolean isAttached, Long version);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id FROM note n
+                WHERE n.id = :id AND (CAST(:version AS BIGINT) IS NULL OR n.version = :version)
+                FOR UPDATE),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM target t
+                WHERE u.id = t.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', t.id, 'changeSeq', u.change_seq, 'type', 'TEXT_CHANGED')::text))
+            UPDATE note n SET text = :text, text_codec = :textCodec, text_hash = :textHash, plain_text = :plainText,
+                text_vector = setweight(to_tsvector('russian', COALESCE(:plainText, '')), 'B'),
+                version = n.version + 1, change_seq = seq.change_seq, text_patched_at = NULL
+            FROM target t, seq
+            WHERE n.id = t.id
+            RETURNING n.user_id, n.version""")
+    Mono<NoteVersion> updateText(Long id, byte[] text, String textCodec, String textHash, String plainText, Long version);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id FROM note n
+                WHERE n.id = :id AND n.version = :version
+                FOR UPDATE),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM target t
+                WHERE u.id = t.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', t.id, 'changeSeq', u.change_seq, 'type', 'TEXT_CHANGED')::text))
+            UPDATE note n SET text = :text, text_codec = NULL, text_hash = :textHash, plain_text = :plainText,
+                text_vector = setweight(to_tsvector('russian', COALESCE(:plainText, '')), 'B'),
+                version = n.version + 1, change_seq = seq.change_seq, text_patched_at = now()
+            FROM target t, seq
+            WHERE n.id = t.id
+            RETURNING n.user_id, n.version""")
+    Mono<NoteVersion> updatePatchedText(Long id, byte[] text, String textHash, String plainText, Long version);
+
+    @Query("""
+            SELECT id, text, text_hash FROM note
+            WHERE text_patched_at < :patchedBefore
+            ORDER BY text_patched_at
+            LIMIT :limit""")
+    Flux<PatchedText> findPatchedTexts(Instant patchedBefore, int limit);
+
+    @Modifying
+    @Query("""
+            UPDATE note SET text = :text, text_codec = :textCodec, text_patched_at = NULL
+            WHERE id = :id AND text_hash IS NOT DISTINCT FROM :textHash AND text_codec IS NULL""")
+    Mono<Integer> updateCompressedText(Long id, byte[] text, String textCodec, String textHash);
+
+    @Query("""
+            SELECT id, text, text_codec FROM note
+            WHERE plain_text IS NULL AND text IS NOT NULL
+            ORDER BY id
+            LIMIT :limit""")
+    Flux<NoteText> findNotIndexedTexts(int limit);
+
+    @Modifying
+    @Query("""
+            UPDATE note SET plain_text = :plainText,
+                text_vector = setweight(to_tsvector('russian', COALESCE(:plainText, '')), 'B')
+            WHERE id = :id AND plain_text IS NULL""")
+    Mono<Integer> updatePlainText(Long id, String plainText);
+
+    @Query("""
+            SELECT n.id, n.name, n.is_attached, n.version,
+                a.ids AS attachment_ids,
+                a.extensions AS attachment_extensions,
+                a.sizes AS attachment_sizes,
+                a.blob_keys AS attachment_hashes
+            FROM note n
+            CROSS JOIN LATERAL (
+                SELECT array_agg(CAST(at.id AS BIGINT) ORDER BY na.id) AS ids,
+                    array_agg(at.extension ORDER BY na.id) AS extensions,
+                    array_agg(at.size ORDER BY na.id) AS sizes,
+                    array_agg(at.blob_key ORDER BY na.id) AS blob_keys
+                FROM note_attachments na
+                JOIN attachment at ON at.id = na.attachment_id
+                WHERE na.note_id = n.id) a
+            WHERE n.id = :id""")
+    Mono<NoteDetails> findDetailsById(Long id);
+
+    @Query("""
+            SELECT n.id, n.name, n.is_attached, n.version, n.change_seq, n.text_hash,
+                CASE WHEN :includeText THEN n.text END AS text,
+                CASE WHEN :includeText THEN n.text_codec END AS text_codec,
+                a.ids AS attachment_ids,
+                a.extensions AS attachment_extensions,
+                a.sizes AS attachment_sizes,
+                a.blob_keys AS attachment_hashes
+            FROM note n
+            CROSS JOIN LATERAL (
+                SELECT array_agg(CAST(at.id AS BIGINT) ORDER BY na.id) AS ids,
+                    array_agg(at.extension ORDER BY na.id) AS extensions,
+                    array_agg(at.size ORDER BY na.id) AS sizes,
+                    array_agg(at.blob_key ORDER BY na.id) AS blob_keys
+                FROM note_attachments na
+                JOIN attachment at ON at.id = na.attachment_id
+                WHERE na.note_id = n.id) a
+            WHERE n.user_id = :userId AND n.id = ANY(CAST(:ids AS INTEGER[]))
+            ORDER BY n.id""")
+    Flux<NoteContent> findContentsByUserIdAndIdIn(Long userId, Long[] ids, boolean includeText);
+
+    @Query("""
+            WITH target AS (
+                SELECT n.id, n.user_id FROM note n
+                WHERE n.id = :id
+                FOR UPDATE),
+            seq AS (
+                UPDATE user_info u SET change_seq = u.change_seq + 1
+                FROM target t
+                WHERE u.id = t.user_id
+                RETURNING u.change_seq, pg_notify('note_changes', json_build_object(
+                    'userId', u.id, 'noteId', t.id, 'changeSeq', u.change_seq, 'type', CAST(:type AS TEXT))::text))
+            UPDATE note n SET change_seq = seq.change_seq
+            FROM target t, seq
+            WHERE n.id = t.id
+            RETURNING n.change_seq""")
+    Mono<Long> touch(Long id, NoteChangeType type);
+
+    @Query("""
+            SELECT n.id, n.name, n.is_attached, n.version, n.text_hash, n.change_seq,
+                a.ids AS attachment_ids,
+                a.extensions AS attachment_extensions,
+                a.sizes AS attachment_sizes,
+                a.blob_keys AS attachment_hashes
+            FROM note n
+            CROSS JOIN LATERAL (
+                SELECT array_agg(CAST(at.id AS BIGINT) ORDER BY na.id) AS ids,
+                    array_agg(at.extension ORDER BY na.id) AS extensions,
+                    array_agg(at.size ORDER BY na.id) AS sizes,
+                    array_agg(at.blob_key ORDER BY na.id) AS blob_keys
+                FROM note_attachments na
+                JOIN attachment at ON at.id = na.attachment_id
+                WHERE na.note_id = n.id) a
+            WHERE n.user_id = :userId AND n.change_seq > :since
+            ORDER BY n.change_seq
+            LIMIT :limit""")
+    Flux<NoteChange> findChangesByUserIdAfter(Long userId, long since, int limit);
+
+    @Query("SELECT id, name, is_attached, version, text_hash, text_codec FROM note WHERE id = :id")
+    Mono<NoteMetadata> findMetadataById(Long id);
 
 }
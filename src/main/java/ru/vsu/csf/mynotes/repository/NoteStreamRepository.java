@@ -0,0 +1,10 @@
+package ru.vsu.csf.mynotes.repository;
+
+import reactor.core.publisher.Flux;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+
+public interface NoteStreamRepository {
+
+    Flux<NoteSummary> streamSummariesByUserId(Long userId);
+
+}
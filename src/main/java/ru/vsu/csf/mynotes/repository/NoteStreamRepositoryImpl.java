@@ -0,0 +1,33 @@
+package ru.vsu.csf.mynotes.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+
+@RequiredArgsConstructor
+public class NoteStreamRepositoryImpl implements NoteStreamRepository {
+
+    private static final String SELECT_SUMMARIES_BY_USER_ID = """
+            SELECT id, name, is_attached, version FROM note
+            WHERE user_id = :userId
+            ORDER BY is_attached DESC, id""";
+
+    private final DatabaseClient databaseClient;
+    private final ApplicationProperties applicationProperties;
+
+    @Override
+    public Flux<NoteSummary> streamSummariesByUserId(Long userId) {
+        return databaseClient.sql(SELECT_SUMMARIES_BY_USER_ID)
+                .filter(statement -> statement.fetchSize(applicationProperties.getNotesStreamFetchSize()))
+                .bind("userId", userId)
+                .map(row -> new NoteSummary(
+                        row.get("id", Long.class),
+                        row.get("name", String.class),
+                        Boolean.TRUE.equals(row.get("is_attached", Boolean.class)),
+                        row.get("version", Long.class)))
+                .all();
+    }
+
+}
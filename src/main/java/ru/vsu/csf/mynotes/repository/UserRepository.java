@@ -1,5 +1,7 @@
 package ru.vsu.csf.mynotes.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Mono;
@@ -10,4 +12,8 @@ public interface UserRepository extends R2dbcRepository<User, Long> {
 
     Mono<User> findByEmail(String email);
 
+    @Modifying
+    @Query("UPDATE user_info SET role = :role WHERE email = ANY(CAST(:emails AS VARCHAR[])) AND role <> :role")
+    Mono<Integer> updateRoleByEmailIn(String[] emails, String role);
+
 }
@@ -0,0 +1,112 @@
+package ru.vsu.csf.mynotes.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+class IntPostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids = new int[2];
+    private int size;
+
+    boolean add(int id) {
+        var index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return false;
+        }
+        var insertAt = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(int id) {
+        var index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    static int[] union(Collection<IntPostingList> lists) {
+        if (lists.isEmpty()) {
+            return EMPTY;
+        }
+        if (lists.size() == 1) {
+            return lists.iterator().next().toArray();
+        }
+        var total = lists.stream().mapToInt(list -> list.size).sum();
+        var merged = new int[total];
+        var offset = 0;
+        for (var list : lists) {
+            System.arraycopy(list.ids, 0, merged, offset, list.size);
+            offset += list.size;
+        }
+        Arrays.sort(merged);
+        return distinct(merged);
+    }
+
+    static int[] union(int[] first, int[] second) {
+        var merged = new int[first.length + second.length];
+        int i = 0, j = 0, size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                merged[size++] = first[i++];
+            } else if (first[i] > second[j]) {
+                merged[size++] = second[j++];
+            } else {
+                merged[size++] = first[i++];
+                j++;
+            }
+        }
+        while (i < first.length) {
+            merged[size++] = first[i++];
+        }
+        while (j < second.length) {
+            merged[size++] = second[j++];
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    static int[] intersect(int[] first, int[] second) {
+        var result = new int[Math.min(first.length, second.length)];
+        int i = 0, j = 0, size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] distinct(int[] sorted) {
+        var size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+}
@@ -0,0 +1,150 @@
+package ru.vsu.csf.mynotes.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.configuration.property.InMemorySearchProperties;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Component
+public class NoteSearchIndex {
+
+    private static final Duration CHANGE_TRACKING_WINDOW = Duration.ofMinutes(1);
+
+    private final NoteRepository noteRepository;
+    private final boolean enabled;
+    private final Cache<Long, UserNoteIndex> indexes;
+    private final Cache<Long, Long> noteChanges;
+    private final Cache<Long, Long> userChanges;
+    private final AtomicLong changeSequence = new AtomicLong();
+    private final AtomicLong lastEviction = new AtomicLong();
+
+    public NoteSearchIndex(NoteRepository noteRepository, InMemorySearchProperties inMemorySearchProperties) {
+        this.noteRepository = noteRepository;
+        this.enabled = inMemorySearchProperties.isEnabled();
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(inMemorySearchProperties.getMemoryBudget().toBytes())
+                .weigher((Long userId, UserNoteIndex index) -> index.weight())
+                .expireAfterAccess(inMemorySearchProperties.getTtl())
+                .build();
+        this.noteChanges = Caffeine.newBuilder()
+                .expireAfterWrite(CHANGE_TRACKING_WINDOW)
+                .build();
+        this.userChanges = Caffeine.newBuilder()
+                .expireAfterWrite(CHANGE_TRACKING_WINDOW)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<List<NoteSummary>> search(Long userId, String query, int limit) {
+        var tokens = UserNoteIndex.tokenize(query);
+        return Mono.justOrEmpty(indexes.getIfPresent(userId))
+                .switchIfEmpty(Mono.defer(() -> build(userId)))
+                .map(index -> index.search(tokens, limit));
+    }
+
+    public void onNoteCreated(Long userId, Long noteId, String name, Long version) {
+        if (!enabled) {
+            return;
+        }
+        var index = indexes.getIfPresent(userId);
+        if (index == null) {
+            userChanges.put(userId, changeSequence.incrementAndGet());
+            return;
+        }
+        index.put(Math.toIntExact(noteId), name, false, version, null);
+        indexes.put(userId, index);
+    }
+
+    public void onNameChanged(Long userId, Long noteId, String name, Long version) {
+        update(userId, noteId, index -> index.updateName(Math.toIntExact(noteId), name, version));
+    }
+
+    public void onTextChanged(Long userId, Long noteId, String plainText, Long version) {
+        update(userId, noteId, index -> index.updateText(Math.toIntExact(noteId), plainText, version));
+    }
+
+    public void onAttachedChanged(Long userId, Long noteId, boolean isAttached, Long version) {
+        update(userId, noteId, index -> index.updateAttached(Math.toIntExact(noteId), isAttached, version));
+    }
+
+    public void evictNote(Long userId, Long noteId) {
+        if (!enabled) {
+            return;
+        }
+        noteChanges.put(noteId, changeSequence.incrementAndGet());
+        if (userId != null) {
+            indexes.invalidate(userId);
+        }
+    }
+
+    public void evictUser(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        userChanges.put(userId, changeSequence.incrementAndGet());
+        indexes.invalidate(userId);
+    }
+
+    public void evictAll() {
+        if (!enabled) {
+            return;
+        }
+        lastEviction.set(changeSequence.incrementAndGet());
+        indexes.invalidateAll();
+    }
+
+    private void update(Long userId, Long noteId, Predicate<UserNoteIndex> update) {
+        if (!enabled) {
+            return;
+        }
+        noteChanges.put(noteId, changeSequence.incrementAndGet());
+        var index = indexes.getIfPresent(userId);
+        if (index != null && update.test(index)) {
+            indexes.put(userId, index);
+        }
+    }
+
+    private Mono<UserNoteIndex> build(Long userId) {
+        var startedAt = changeSequence.get();
+        var index = new UserNoteIndex();
+        return noteRepository.findSearchDocumentsByUserId(userId)
+                .doOnNext(document -> index.put(
+                        Math.toIntExact(document.getId()),
+                        document.getName(),
+                        document.isAttached(),
+                        document.getVersion(),
+                        document.getPlainText()))
+                .then(Mono.fromSupplier(() -> {
+                    if (!changedSince(userId, index, startedAt)) {
+                        indexes.put(userId, index);
+                    }
+                    return index;
+                }));
+    }
+
+    private boolean changedSince(Long userId, UserNoteIndex index, long sequence) {
+        if (lastEviction.get() > sequence) {
+            return true;
+        }
+        var userChange = userChanges.getIfPresent(userId);
+        if (userChange != null && userChange > sequence) {
+            return true;
+        }
+        return Arrays.stream(index.noteIds())
+                .mapToObj(id -> noteChanges.getIfPresent((long) id))
+                .anyMatch(change -> change != null && change > sequence);
+    }
+
+}
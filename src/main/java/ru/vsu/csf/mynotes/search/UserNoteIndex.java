@@ -0,0 +1,186 @@
+package ru.vsu.csf.mynotes.search;
+
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+class UserNoteIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int TERM_OVERHEAD = 96;
+    private static final int NOTE_OVERHEAD = 128;
+
+    private final NavigableMap<String, IntPostingList> nameTerms = new TreeMap<>();
+    private final NavigableMap<String, IntPostingList> textTerms = new TreeMap<>();
+    private final Map<Integer, IndexedNote> notes = new HashMap<>();
+    private long weight;
+
+    synchronized void put(int id, String name, boolean isAttached, Long version, String text) {
+        remove(id);
+        var note = new IndexedNote(name, isAttached, version, tokenize(name), tokenize(text));
+        notes.put(id, note);
+        weight += NOTE_OVERHEAD + 2L * (name == null ? 0 : name.length());
+        addTerms(nameTerms, note.nameTerms, id);
+        addTerms(textTerms, note.textTerms, id);
+    }
+
+    synchronized boolean updateName(int id, String name, Long version) {
+        var note = notes.get(id);
+        if (note == null) {
+            return false;
+        }
+        removeTerms(nameTerms, note.nameTerms, id);
+        weight += 2L * ((name == null ? 0 : name.length()) - (note.name == null ? 0 : note.name.length()));
+        note.name = name;
+        note.version = version;
+        note.nameTerms = tokenize(name);
+        addTerms(nameTerms, note.nameTerms, id);
+        return true;
+    }
+
+    synchronized boolean updateText(int id, String text, Long version) {
+        var note = notes.get(id);
+        if (note == null) {
+            return false;
+        }
+        removeTerms(textTerms, note.textTerms, id);
+        note.version = version;
+        note.textTerms = tokenize(text);
+        addTerms(textTerms, note.textTerms, id);
+        return true;
+    }
+
+    synchronized boolean updateAttached(int id, boolean isAttached, Long version) {
+        var note = notes.get(id);
+        if (note == null) {
+            return false;
+        }
+        note.isAttached = isAttached;
+        note.version = version;
+        return true;
+    }
+
+    synchronized int[] noteIds() {
+        return notes.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    synchronized int weight() {
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    synchronized List<NoteSummary> search(String[] tokens, int limit) {
+        int[] matches = null;
+        int[] nameMatches = null;
+        for (var token : tokens) {
+            var inName = findByPrefix(nameTerms, token);
+            var inText = findByPrefix(textTerms, token);
+            var any = IntPostingList.union(inName, inText);
+            matches = matches == null ? any : IntPostingList.intersect(matches, any);
+            nameMatches = nameMatches == null ? inName : IntPostingList.intersect(nameMatches, inName);
+        }
+        if (matches == null) {
+            return List.of();
+        }
+        var result = new ArrayList<NoteSummary>(Math.min(limit, matches.length));
+        for (var id : nameMatches) {
+            if (result.size() == limit) {
+                return result;
+            }
+            result.add(toSummary(id));
+        }
+        for (var id : matches) {
+            if (result.size() == limit) {
+                return result;
+            }
+            if (Arrays.binarySearch(nameMatches, id) < 0) {
+                result.add(toSummary(id));
+            }
+        }
+        return result;
+    }
+
+    static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        return TOKEN_SEPARATOR.splitAsStream(text.toLowerCase(Locale.ROOT))
+                .filter(token -> !token.isEmpty() && token.length() <= MAX_TERM_LENGTH)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private void remove(int id) {
+        var note = notes.remove(id);
+        if (note != null) {
+            removeTerms(nameTerms, note.nameTerms, id);
+            removeTerms(textTerms, note.textTerms, id);
+            weight -= NOTE_OVERHEAD + 2L * (note.name == null ? 0 : note.name.length());
+        }
+    }
+
+    private NoteSummary toSummary(int id) {
+        var note = notes.get(id);
+        return new NoteSummary((long) id, note.name, note.isAttached, note.version);
+    }
+
+    private void addTerms(Map<String, IntPostingList> index, String[] terms, int id) {
+        for (var term : terms) {
+            var postings = index.get(term);
+            if (postings == null) {
+                postings = new IntPostingList();
+                index.put(term, postings);
+                weight += TERM_OVERHEAD + 2L * term.length();
+            }
+            if (postings.add(id)) {
+                weight += Integer.BYTES;
+            }
+        }
+    }
+
+    private void removeTerms(Map<String, IntPostingList> index, String[] terms, int id) {
+        for (var term : terms) {
+            var postings = index.get(term);
+            if (postings != null && postings.remove(id)) {
+                weight -= Integer.BYTES;
+                if (postings.isEmpty()) {
+                    index.remove(term);
+                    weight -= TERM_OVERHEAD + 2L * term.length();
+                }
+            }
+        }
+    }
+
+    private static int[] findByPrefix(NavigableMap<String, IntPostingList> index, String prefix) {
+        return IntPostingList.union(index.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values());
+    }
+
+    private static final class IndexedNote {
+
+        private String name;
+        private boolean isAttached;
+        private Long version;
+        private String[] nameTerms;
+        private String[] textTerms;
+
+        private IndexedNote(String name, boolean isAttached, Long version, String[] nameTerms, String[] textTerms) {
+            this.name = name;
+            this.isAttached = isAttached;
+            this.version = version;
+            this.nameTerms = nameTerms;
+            this.textTerms = textTerms;
+        }
+
+    }
+
+}
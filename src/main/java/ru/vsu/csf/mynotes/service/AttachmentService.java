@@ -3,9 +3,17 @@ package ru.vsu.csf.mynotes.service;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.http.codec.multipart.Part;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
@@ -13,79 +21,116 @@ import ru.vsu.csf.mynotes.dictionary.FileExtension;
 import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.NotFoundException;
 import ru.vsu.csf.mynotes.model.entity.Attachment;
+import ru.vsu.csf.mynotes.model.projection.AttachmentFile;
 import ru.vsu.csf.mynotes.repository.AttachmentRepository;
+import ru.vsu.csf.mynotes.storage.BlobStore;
 import ru.vsu.csf.mynotes.util.FilePartUtils;
+import ru.vsu.csf.mynotes.util.HashUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.PARTIAL_CONTENT;
+import static org.springframework.http.HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
 
 @Service
 @RequiredArgsConstructor
 public class AttachmentService {
 
+    private static final String MULTIPART_BYTERANGES = "multipart/byteranges; boundary=%s";
+    private static final String ATTACHMENTS_PART_NAME = "attachments";
+
     private final AttachmentRepository attachmentRepository;
+    private final BlobStore blobStore;
     private final ApplicationProperties applicationProperties;
 
-    public Flux<Long> saveAttachments(@NotNull List<FilePart> attachments) {
-        return Mono.just(attachments)
-                .flatMap(it -> validateAttachments(it).thenReturn(it))
-                .flatMapIterable(it -> it)
-                .flatMap(this::addAttachment);
+    public Mono<List<Attachment>> storeAttachments(@NotNull Flux<PartEvent> parts) {
+        return Flux.defer(() -> {
+                    var fileCount = new AtomicInteger();
+                    return parts.windowUntil(PartEvent::isLast, false, applicationProperties.getUploadBufferWindow())
+                            .concatMap(part -> part.<Attachment>switchOnFirst((signal, events) -> {
+                                if (!(signal.get() instanceof FilePartEvent filePartEvent)
+                                        || !ATTACHMENTS_PART_NAME.equals(filePartEvent.name())) {
+                                    return skipPart(events);
+                                }
+                                if (fileCount.incrementAndGet() > applicationProperties.getMaxFileAmount()) {
+                                    DataBufferUtils.release(filePartEvent.content());
+                                    return Mono.error(new BadRequestException(
+                                            "Количество файлов превышает заданный лимит в количестве %d файлов"
+                                                    .formatted(applicationProperties.getMaxFileAmount())));
+                                }
+                                return Mono.fromCallable(() -> getExtension(filePartEvent.filename()))
+                                        .doOnError(e -> DataBufferUtils.release(filePartEvent.content()))
+                                        .flatMap(extension -> storeAttachment(extension, events));
+                            }));
+                })
+                .collectList();
     }
 
-    private Mono<Void> validateAttachments(List<FilePart> attachments) {
-        if (attachments.size() > applicationProperties.getMaxFileAmount()) {
-            throw new BadRequestException("Количество файлов превышает заданный лимит в количестве %d файлов"
-                    .formatted(applicationProperties.getMaxFileAmount()));
+    public Flux<Long> insertAttachments(@NotNull List<Attachment> attachments) {
+        if (attachments.isEmpty()) {
+            return Flux.empty();
         }
-        return Flux.fromIterable(attachments)
-                .flatMap(this::validateAttachment)
-                .then();
+        var distinctAttachments = attachments.stream()
+                .collect(Collectors.toMap(
+                        AttachmentContent::of, Function.identity(), (first, second) -> first, LinkedHashMap::new))
+                .values();
+        return attachmentRepository.upsertAll(
+                        distinctAttachments.stream().map(Attachment::getBlobKey).toArray(String[]::new),
+                        distinctAttachments.stream().map(Attachment::getSize).toArray(Long[]::new),
+                        distinctAttachments.stream()
+                                .map(attachment -> attachment.getExtension().name())
+                                .toArray(String[]::new))
+                .collectMap(AttachmentContent::of, Attachment::getId)
+                .flatMapMany(ids -> Flux.fromIterable(attachments)
+                        .map(attachment -> ids.get(AttachmentContent.of(attachment))));
     }
 
-    private Mono<Void> validateAttachment(FilePart attachment) {
-        var fileNameParts = attachment.filename().split("\\.");
-        if (fileNameParts.length < 2) {
-            throw new BadRequestException("Файл не имеет расширения");
-        }
-        if (!FileExtension.getValues().contains(fileNameParts[1])) {
-            throw new BadRequestException("Формат вложения %s не поддерживается".formatted(fileNameParts[1]));
-        }
-        return Mono.just(attachment)
-                .flatMapMany(Part::content)
-                .map(DataBuffer::capacity)
-                .collectList()
-                .doOnNext(capacity -> {
-                    var fileSize = capacity.stream()
-                            .reduce(0, Integer::sum);
-                    if (fromBytesToMegaBytes(fileSize) > applicationProperties.getMaxFileSizeMb()) {
-                        throw new BadRequestException(
-                                "Размер файла превышает максимальное число Мбайт: %s (в файле %s)"
-                                        .formatted(applicationProperties.getMaxFileSizeMb(), fileSize));
-                    }
-                })
-                .then();
+    private Mono<Attachment> storeAttachment(FileExtension extension, Flux<PartEvent> events) {
+        return blobStore.store(
+                        FilePartUtils.getLimitedContent(
+                                        events.map(PartEvent::content), applicationProperties.getMaxFileSizeMb())
+                                .limitRate(applicationProperties.getUploadBufferWindow()))
+                .map(blob -> new Attachment()
+                        .setBlobKey(blob.key())
+                        .setSize(blob.size())
+                        .setExtension(extension));
     }
 
-    private Mono<Long> addAttachment(FilePart attachment) {
-        return FilePartUtils.getByteArray(attachment)
-                .flatMap(bytes -> attachmentRepository.save(
-                        new Attachment().setFile(bytes)
-                                .setExtension(
-                                        FileExtension.valueOf(attachment.filename()
-                                                .split("\\.")[1]
-                                                .toUpperCase()))))
-                .map(Attachment::getId);
+    private static <T> Mono<T> skipPart(Flux<PartEvent> events) {
+        return events.doOnNext(event -> DataBufferUtils.release(event.content()))
+                .then(Mono.empty());
     }
 
-    public Mono<Void> deleteAttachments(@NotNull List<Long> ids) {
-        return Flux.fromIterable(ids)
-                .flatMap(this::deleteAttachment)
-                .then();
+    public Flux<String> deleteAttachments(@NotNull Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return attachmentRepository.deleteUnlinkedByIds(ids.toArray(Long[]::new));
     }
 
-    private Mono<Void> deleteAttachment(Long id) {
-        return findById(id)
-                .flatMap(ignored -> attachmentRepository.deleteById(id));
+    public Flux<String> deleteBlobsIfUnused(@NotNull Collection<String> blobKeys, @NotNull Instant modifiedBefore) {
+        if (blobKeys.isEmpty()) {
+            return Flux.empty();
+        }
+        return attachmentRepository.findUsedBlobKeys(blobKeys.toArray(String[]::new))
+                .collect(Collectors.toSet())
+                .flatMapMany(usedKeys -> Flux.fromIterable(blobKeys)
+                        .distinct()
+                        .filter(blobKey -> !usedKeys.contains(blobKey)))
+                .concatMap(blobKey -> blobStore.deleteIfModifiedBefore(blobKey, modifiedBefore)
+                        .filter(Boolean::booleanValue)
+                        .map(deleted -> blobKey));
     }
 
     private Mono<Attachment> findById(Long id) {
@@ -98,8 +143,167 @@ public class AttachmentService {
         return findById(id);
     }
 
-    private static int fromBytesToMegaBytes(int bytes) {
-        return bytes / 1024 / 1024;
+    public Mono<Void> writeAttachmentContent(
+            @NotNull Attachment attachment,
+            @NotNull HttpHeaders requestHeaders,
+            @NotNull ServerHttpResponse response) {
+
+        var size = attachment.getSize();
+        if (size == null) {
+            response.setStatusCode(OK);
+            return response.writeWith(getAttachmentContent(attachment));
+        }
+        var httpRanges = matchesIfRange(requestHeaders, attachment)
+                ? getHttpRanges(requestHeaders)
+                : List.<HttpRange>of();
+        var ranges = getByteRanges(httpRanges, size);
+        if (!httpRanges.isEmpty() && ranges.isEmpty()) {
+            response.setStatusCode(REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return response.setComplete();
+        }
+        if (ranges.isEmpty() || ranges.size() == 1 && ranges.get(0).length() == size) {
+            response.setStatusCode(OK);
+            response.getHeaders().setContentLength(size);
+            return writeAttachmentContent(attachment, response, new ByteRange(0, size - 1));
+        }
+        response.setStatusCode(PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            var range = ranges.get(0);
+            response.getHeaders().setContentLength(range.length());
+            response.getHeaders().set(HttpHeaders.CONTENT_RANGE, range.toContentRange(size));
+            return writeAttachmentContent(attachment, response, range);
+        }
+        return writeAttachmentRanges(attachment, response, ranges);
+    }
+
+    private Mono<Void> writeAttachmentContent(Attachment attachment, ServerHttpResponse response, ByteRange range) {
+        var path = Optional.ofNullable(attachment.getBlobKey())
+                .flatMap(blobStore::findPath);
+        if (path.isPresent() && response instanceof ZeroCopyHttpOutputMessage zeroCopyResponse) {
+            return zeroCopyResponse.writeWith(path.get(), range.start(), range.length());
+        }
+        return response.writeWith(getAttachmentContent(attachment, range));
+    }
+
+    private Mono<Void> writeAttachmentRanges(
+            Attachment attachment,
+            ServerHttpResponse response,
+            List<ByteRange> ranges) {
+
+        var size = attachment.getSize();
+        var boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        var contentType = attachment.getExtension().getContentType();
+        var parts = ranges.stream()
+                .map(range -> new ByteRangePart(
+                        ("\r\n--%s\r\n%s: %s\r\n%s: %s\r\n\r\n".formatted(
+                                boundary,
+                                HttpHeaders.CONTENT_TYPE, contentType,
+                                HttpHeaders.CONTENT_RANGE, range.toContentRange(size)))
+                                .getBytes(StandardCharsets.US_ASCII),
+                        range))
+                .toList();
+        var ending = "\r\n--%s--\r\n".formatted(boundary).getBytes(StandardCharsets.US_ASCII);
+
+        response.getHeaders().setContentType(MediaType.parseMediaType(MULTIPART_BYTERANGES.formatted(boundary)));
+        response.getHeaders().setContentLength(parts.stream()
+                .mapToLong(part -> part.header().length + part.range().length())
+                .sum() + ending.length);
+
+        var bufferFactory = response.bufferFactory();
+        return response.writeWith(Flux.fromIterable(parts)
+                .concatMap(part -> Flux.concat(
+                        Mono.fromCallable(() -> bufferFactory.wrap(part.header())),
+                        getAttachmentContent(attachment, part.range())))
+                .concatWith(Mono.fromCallable(() -> bufferFactory.wrap(ending))));
+    }
+
+    private Flux<DataBuffer> getAttachmentContent(Attachment attachment) {
+        if (attachment.getBlobKey() != null) {
+            return blobStore.read(attachment.getBlobKey());
+        }
+        return attachmentRepository.findFileById(attachment.getId())
+                .map(AttachmentService::toDataBuffer)
+                .flux();
+    }
+
+    private Flux<DataBuffer> getAttachmentContent(Attachment attachment, ByteRange range) {
+        if (attachment.getBlobKey() != null) {
+            return blobStore.read(attachment.getBlobKey(), range.start(), range.length());
+        }
+        return attachmentRepository.findFilePartById(attachment.getId(), range.start() + 1, range.length())
+                .map(AttachmentService::toDataBuffer)
+                .flux();
+    }
+
+    private static DataBuffer toDataBuffer(AttachmentFile attachmentFile) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(attachmentFile.getFile());
+    }
+
+    private static boolean matchesIfRange(HttpHeaders requestHeaders, Attachment attachment) {
+        var ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        return ifRange == null
+                || attachment.getBlobKey() != null && ifRange.equals(HashUtils.toETag(attachment.getBlobKey()));
+    }
+
+    private static List<HttpRange> getHttpRanges(HttpHeaders requestHeaders) {
+        try {
+            return requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static List<ByteRange> getByteRanges(List<HttpRange> httpRanges, long size) {
+        var ranges = httpRanges.stream()
+                .map(range -> new ByteRange(range.getRangeStart(size), range.getRangeEnd(size)))
+                .filter(range -> range.start() < size && range.start() <= range.end())
+                .sorted(Comparator.comparingLong(ByteRange::start))
+                .toList();
+        var merged = new ArrayList<ByteRange>();
+        for (var range : ranges) {
+            var last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.start() <= last.end() + 1) {
+                merged.set(merged.size() - 1, new ByteRange(last.start(), Math.max(last.end(), range.end())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static FileExtension getExtension(String filename) {
+        var fileNameParts = filename.split("\\.");
+        if (fileNameParts.length < 2) {
+            throw new BadRequestException("Файл не имеет расширения");
+        }
+        if (!FileExtension.getValues().contains(fileNameParts[1])) {
+            throw new BadRequestException("Формат вложения %s не поддерживается".formatted(fileNameParts[1]));
+        }
+        return FileExtension.valueOf(fileNameParts[1].toUpperCase());
+    }
+
+    private record AttachmentContent(String blobKey, FileExtension extension) {
+
+        static AttachmentContent of(Attachment attachment) {
+            return new AttachmentContent(attachment.getBlobKey(), attachment.getExtension());
+        }
+
+    }
+
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String toContentRange(long size) {
+            return "bytes %d-%d/%d".formatted(start, end, size);
+        }
+
+    }
+
+    private record ByteRangePart(byte[] header, ByteRange range) {
     }
 
 }
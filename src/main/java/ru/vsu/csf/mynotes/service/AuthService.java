@@ -2,30 +2,46 @@ package ru.vsu.csf.mynotes.service;
 
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.NoteOwnershipCache;
+import ru.vsu.csf.mynotes.configuration.security.JwtAuthenticationToken;
 import ru.vsu.csf.mynotes.exception.ForbiddenException;
 import ru.vsu.csf.mynotes.model.entity.User;
 import ru.vsu.csf.mynotes.repository.NoteRepository;
 import ru.vsu.csf.mynotes.repository.UserRepository;
 
+import java.security.Principal;
+
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
     private final NoteRepository noteRepository;
     private final UserRepository userRepository;
+    private final NoteOwnershipCache noteOwnershipCache;
 
     public Mono<Void> checkUsersPermission(@NotNull String email, @NotNull Long noteId) {
-        return userRepository.findByEmail(email)
-                .flatMap(user -> noteRepository.findByIdAndUserId(noteId, user.getId()))
+        if (noteOwnershipCache.isAllowed(email, noteId)) {
+            return Mono.empty();
+        }
+        return noteRepository.existsByIdAndUserEmail(noteId, email)
+                .filter(Boolean::booleanValue)
                 .switchIfEmpty(Mono.defer(() ->
                         Mono.error(new ForbiddenException("Запрещен доступ к заметке"))))
+                .doOnNext(ignored -> noteOwnershipCache.allow(email, noteId))
                 .then();
     }
 
-    public Mono<Long> getUserId(@NotNull String email) {
-        return userRepository.findByEmail(email)
+    public Mono<Long> getUserId(@NotNull Principal principal) {
+        if (principal instanceof JwtAuthenticationToken token) {
+            return Mono.just(token.getUserId());
+        }
+        if (principal instanceof Authentication authentication && authentication.getPrincipal() instanceof User user) {
+            return Mono.just(user.getId());
+        }
+        return userRepository.findByEmail(principal.getName())
                 .map(User::getId);
     }
 
@@ -0,0 +1,109 @@
+package ru.vsu.csf.mynotes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.CredentialsCache;
+import ru.vsu.csf.mynotes.cache.NoteOwnershipCache;
+import ru.vsu.csf.mynotes.configuration.property.NotificationProperties;
+import ru.vsu.csf.mynotes.dictionary.CacheInvalidationType;
+import ru.vsu.csf.mynotes.model.dto.CacheInvalidationEvent;
+import ru.vsu.csf.mynotes.notification.NotificationPublisher;
+import ru.vsu.csf.mynotes.search.NoteSearchIndex;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheInvalidationService {
+
+    public static final String CHANNEL = "cache_invalidation";
+
+    private static final String LAG_METRIC = "mynotes.cache.invalidation.lag";
+    private static final String TYPE_TAG = "type";
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final NotificationPublisher notificationPublisher;
+    private final NotificationProperties notificationProperties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final NoteOwnershipCache noteOwnershipCache;
+    private final CredentialsCache credentialsCache;
+    private final NoteSearchIndex noteSearchIndex;
+
+    public Mono<Void> publishNoteCreated(@NotNull Long userId, @NotNull Long noteId) {
+        return publish(new CacheInvalidationEvent()
+                .setType(CacheInvalidationType.NOTE_CREATED)
+                .setUserId(userId)
+                .setNoteId(noteId));
+    }
+
+    public Mono<Void> publishNoteChanged(@NotNull Long userId, @NotNull Long noteId) {
+        return publish(new CacheInvalidationEvent()
+                .setType(CacheInvalidationType.NOTE_CHANGED)
+                .setUserId(userId)
+                .setNoteId(noteId));
+    }
+
+    public Mono<Void> publishUserChanged(@NotNull Long userId, @NotNull String email) {
+        return publish(new CacheInvalidationEvent()
+                .setType(CacheInvalidationType.USER_CHANGED)
+                .setUserId(userId)
+                .setEmail(email));
+    }
+
+    public void apply(@NotNull CacheInvalidationEvent event) {
+        if (instanceId.equals(event.getOrigin()) || event.getType() == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case NOTE_CREATED -> noteSearchIndex.evictUser(event.getUserId());
+            case NOTE_CHANGED -> noteSearchIndex.evictNote(event.getUserId(), event.getNoteId());
+            case USER_CHANGED -> {
+                credentialsCache.invalidateUser(event.getEmail());
+                noteOwnershipCache.invalidateUser(event.getEmail());
+                noteSearchIndex.evictUser(event.getUserId());
+            }
+        }
+        recordLag(event);
+    }
+
+    public void invalidateAll() {
+        credentialsCache.invalidateAll();
+        noteOwnershipCache.invalidateAll();
+        noteSearchIndex.evictAll();
+    }
+
+    private Mono<Void> publish(CacheInvalidationEvent event) {
+        if (!notificationProperties.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(event
+                        .setOrigin(instanceId)
+                        .setPublishedAt(System.currentTimeMillis())))
+                .flatMap(payload -> notificationPublisher.notify(CHANNEL, payload))
+                .onErrorResume(e -> {
+                    log.warn("Не удалось отправить событие инвалидации кеша {}", event, e);
+                    return Mono.empty();
+                });
+    }
+
+    private void recordLag(CacheInvalidationEvent event) {
+        if (event.getPublishedAt() == null) {
+            return;
+        }
+        var lag = Math.max(0, System.currentTimeMillis() - event.getPublishedAt());
+        Timer.builder(LAG_METRIC)
+                .tag(TYPE_TAG, event.getType().name())
+                .register(meterRegistry)
+                .record(Duration.ofMillis(lag));
+    }
+
+}
@@ -0,0 +1,79 @@
+package ru.vsu.csf.mynotes.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import ru.vsu.csf.mynotes.configuration.property.NoteEventsProperties;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
+import ru.vsu.csf.mynotes.model.dto.NoteChangeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NoteEventService {
+
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final NoteEventsProperties noteEventsProperties;
+    private final Map<Long, UserChannel> channels = new ConcurrentHashMap<>();
+
+    public Flux<ServerSentEvent<NoteChangeEvent>> streamChanges(@NotNull Long userId) {
+        var events = subscribe(userId)
+                .map(event -> ServerSentEvent.builder(event)
+                        .event(event.getType().name())
+                        .id(event.getChangeSeq() == null ? null : event.getChangeSeq().toString())
+                        .build());
+        var heartbeats = Flux.interval(noteEventsProperties.getHeartbeat())
+                .map(tick -> ServerSentEvent.<NoteChangeEvent>builder()
+                        .comment(HEARTBEAT_COMMENT)
+                        .build());
+        return Flux.merge(events, heartbeats);
+    }
+
+    public Flux<NoteChangeEvent> subscribe(@NotNull Long userId) {
+        return Flux.defer(() -> {
+            var channel = channels.compute(userId, (id, existing) -> {
+                var result = existing == null
+                        ? new UserChannel(Sinks.many().multicast().directBestEffort(), new AtomicInteger())
+                        : existing;
+                result.subscribers().incrementAndGet();
+                return result;
+            });
+            return channel.sink().asFlux()
+                    .onBackpressureBuffer(
+                            noteEventsProperties.getBufferSize(),
+                            dropped -> log.debug("Пропущено событие изменения заметки {}", dropped),
+                            noteEventsProperties.getOverflowStrategy())
+                    .doFinally(signal -> release(userId, channel));
+        });
+    }
+
+    public void publish(@NotNull NoteChangeEvent event) {
+        var channel = channels.get(event.getUserId());
+        if (channel != null) {
+            channel.sink().tryEmitNext(event);
+        }
+    }
+
+    public void requestResync() {
+        channels.forEach((userId, channel) -> channel.sink().tryEmitNext(
+                new NoteChangeEvent().setUserId(userId).setType(NoteChangeType.RESYNC)));
+    }
+
+    private void release(Long userId, UserChannel channel) {
+        channels.computeIfPresent(userId, (id, existing) ->
+                existing == channel && channel.subscribers().decrementAndGet() == 0 ? null : existing);
+    }
+
+    private record UserChannel(Sinks.Many<NoteChangeEvent> sink, AtomicInteger subscribers) {
+    }
+
+}
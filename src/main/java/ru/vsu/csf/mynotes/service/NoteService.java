@@ -1,26 +1,63 @@
 package ru.vsu.csf.mynotes.service;
 
+import io.r2dbc.spi.R2dbcException;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.codec.multipart.PartEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.codec.NoteTextCodec;
+import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
+import ru.vsu.csf.mynotes.dictionary.FileExtension;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
 import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.NotFoundException;
+import ru.vsu.csf.mynotes.exception.PreconditionFailedException;
+import ru.vsu.csf.mynotes.model.dto.AttachmentMetadataResponse;
+import ru.vsu.csf.mynotes.model.dto.GetNoteChangesResponse;
 import ru.vsu.csf.mynotes.model.dto.GetNoteResponse;
+import ru.vsu.csf.mynotes.model.dto.GetNotesBatchRequest;
 import ru.vsu.csf.mynotes.model.dto.GetNotesResponse;
-import ru.vsu.csf.mynotes.model.entity.Attachment;
+import ru.vsu.csf.mynotes.model.dto.NoteContentResponse;
+import ru.vsu.csf.mynotes.model.dto.NoteSearchResult;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextRequest;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextResponse;
+import ru.vsu.csf.mynotes.model.dto.RemoveAttachmentsResponse;
+import ru.vsu.csf.mynotes.model.dto.SearchNotesResponse;
+import ru.vsu.csf.mynotes.model.dto.TextOperation;
 import ru.vsu.csf.mynotes.model.entity.Note;
-import ru.vsu.csf.mynotes.model.entity.NoteAttachments;
+import ru.vsu.csf.mynotes.model.projection.NoteChange;
+import ru.vsu.csf.mynotes.model.projection.NoteContent;
+import ru.vsu.csf.mynotes.model.projection.NoteDetails;
+import ru.vsu.csf.mynotes.model.projection.NoteMetadata;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchHit;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
 import ru.vsu.csf.mynotes.repository.NoteAttachmentsRepository;
 import ru.vsu.csf.mynotes.repository.NoteRepository;
+import ru.vsu.csf.mynotes.search.NoteSearchIndex;
 import ru.vsu.csf.mynotes.util.FilePartUtils;
+import ru.vsu.csf.mynotes.util.HashUtils;
+import ru.vsu.csf.mynotes.util.VersionUtils;
+import ru.vsu.csf.mynotes.util.PlainTextUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.OK;
 
@@ -29,48 +66,148 @@ import static org.springframework.http.HttpStatus.OK;
 public class NoteService {
 
     private static final String DEFAULT_NOTE_NAME = "Новая_заметка";
+    private static final String INVALID_TEXT_ENCODING_SQL_STATE = "22021";
+    private static final CacheControl TEXT_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+    private static final CacheControl ATTACHMENT_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365))
+            .cachePrivate()
+            .immutable();
 
     private final NoteRepository noteRepository;
     private final NoteAttachmentsRepository noteAttachmentsRepository;
     private final AttachmentService attachmentService;
+    private final ApplicationProperties applicationProperties;
+    private final TransactionalOperator transactionalOperator;
+    private final NoteTextCodec noteTextCodec;
+    private final NoteSearchIndex noteSearchIndex;
+    private final CacheInvalidationService cacheInvalidationService;
 
     public Mono<Long> createNote(@NotNull Long userId) {
         return noteRepository.save(
                 new Note().setName(DEFAULT_NOTE_NAME)
                         .setUserId(userId))
-                .map(Note::getId);
+                .flatMap(note -> noteRepository.touch(note.getId(), NoteChangeType.CREATED).thenReturn(note))
+                .as(transactionalOperator::transactional)
+                .doOnNext(note -> noteSearchIndex.onNoteCreated(
+                        userId, note.getId(), note.getName(), note.getVersion()))
+                .flatMap(note -> cacheInvalidationService.publishNoteCreated(userId, note.getId())
+                        .thenReturn(note.getId()));
     }
 
-    public Mono<Long> changeNoteName(@NotNull Long id, @NotNull String name) {
+    public Mono<Long> changeNoteName(@NotNull Long id, @NotNull String name, Long version) {
         if (name.isBlank()) {
             throw new BadRequestException("Имя заметки не может быть пустым");
         }
-        return findById(id)
-                .flatMap(note -> noteRepository.save(note.setName(name)))
-                .map(Note::getId);
+        return noteRepository.updateName(id, name, version)
+                .doOnNext(updated -> noteSearchIndex.onNameChanged(
+                        updated.getUserId(), id, name, updated.getVersion()))
+                .flatMap(updated -> cacheInvalidationService.publishNoteChanged(updated.getUserId(), id)
+                        .thenReturn(updated.getVersion()))
+                .switchIfEmpty(noteNotUpdated(id));
     }
 
-    public Mono<Long> changeNoteText(@NotNull Long id, @NotNull FilePart text) {
-        return Mono.zip(findById(id), FilePartUtils.getByteArray(text))
-                .flatMap(tuple -> noteRepository.save(tuple.getT1().setText(tuple.getT2())))
-                .map(Note::getId);
+    public Mono<Long> changeNoteText(@NotNull Long id, @NotNull FilePart text, Long version) {
+        return FilePartUtils.getByteArray(text)
+                .flatMap(bytes -> {
+                    var encoded = noteTextCodec.encode(bytes);
+                    var plainText = PlainTextUtils.fromHtml(bytes);
+                    var textHash = HashUtils.sha256Hex(bytes);
+                    return noteRepository.updateText(
+                                    id, encoded.content(), encoded.codec(), textHash, plainText, version)
+                            .doOnNext(updated -> noteSearchIndex.onTextChanged(
+                                    updated.getUserId(), id, plainText, updated.getVersion()))
+                            .flatMap(updated -> cacheInvalidationService.publishNoteChanged(updated.getUserId(), id)
+                                    .thenReturn(updated.getVersion()));
+                })
+                .switchIfEmpty(noteNotUpdated(id));
     }
 
-    public Flux<Long> addAttachmentsToNote(@NotNull Long id, @NotNull List<FilePart> attachments) {
-        return Mono.zip(findById(id), attachmentService.saveAttachments(attachments).collectList())
-                .flatMapMany(tuple -> Flux.fromIterable(tuple.getT2())
-                            .flatMap(attachmentId -> noteAttachmentsRepository.save(
-                                    new NoteAttachments()
-                                            .setNoteId(tuple.getT1().getId())
-                                            .setAttachmentId(attachmentId))))
-                .map(NoteAttachments::getAttachmentId);
+    public Mono<PatchNoteTextResponse> patchNoteText(
+            @NotNull Long id,
+            @NotNull PatchNoteTextRequest request,
+            Long version) {
+
+        if (version == null) {
+            throw new BadRequestException("Для изменения текста укажите версию заметки в заголовке If-Match");
+        }
+        var patch = TextPatch.of(request.getOperations());
+        return noteRepository.patchText(
+                        id,
+                        version,
+                        patch.positions(),
+                        patch.lengths(),
+                        patch.dataLengths(),
+                        patch.data(),
+                        patch.tailStart())
+                .doOnNext(patched -> noteSearchIndex.onTextChanged(
+                        patched.getUserId(), id, patched.getPlainText(), patched.getVersion()))
+                .flatMap(patched -> cacheInvalidationService.publishNoteChanged(patched.getUserId(), id)
+                        .thenReturn(new PatchNoteTextResponse(id, patched.getTextHash(), patched.getVersion())))
+                .onErrorMap(NoteService::isInvalidTextEncoding, e -> new BadRequestException(
+                        "Текст заметки с ИД %d не в кодировке UTF-8, отправьте текст целиком".formatted(id)))
+                .switchIfEmpty(Mono.defer(() -> patchEncodedText(id, version, patch)));
     }
 
-    public Mono<Void> deleteAttachments(@NotNull Long id, @NotNull List<Long> attachmentIds) {
+    private Mono<PatchNoteTextResponse> patchEncodedText(Long id, Long version, TextPatch patch) {
         return findById(id)
-                .flatMap(ignored -> noteAttachmentsRepository.deleteByNoteIdAndAttachmentIdIn(id, attachmentIds))
-                .flatMapMany(ignored -> attachmentService.deleteAttachments(attachmentIds))
-                .then();
+                .filter(note -> Objects.equals(note.getVersion(), version))
+                .flatMap(note -> {
+                    var text = Objects.requireNonNullElse(
+                            noteTextCodec.decode(note.getText(), note.getTextCodec()), new byte[0]);
+                    if (text.length < patch.tailStart()) {
+                        return Mono.error(new BadRequestException("Изменение текста выходит за пределы текста"));
+                    }
+                    if (patch.splitsCharacter(text)) {
+                        return Mono.error(new BadRequestException(
+                                "Позиция изменения текста приходится на середину символа"));
+                    }
+                    var patched = patch.apply(text);
+                    var textHash = HashUtils.sha256Hex(patched);
+                    var plainText = PlainTextUtils.fromHtml(patched);
+                    return noteRepository.updatePatchedText(id, patched, textHash, plainText, version)
+                            .doOnNext(updated -> noteSearchIndex.onTextChanged(
+                                    updated.getUserId(), id, plainText, updated.getVersion()))
+                            .flatMap(updated -> cacheInvalidationService.publishNoteChanged(updated.getUserId(), id)
+                                    .thenReturn(new PatchNoteTextResponse(id, textHash, updated.getVersion())));
+                })
+                .switchIfEmpty(noteNotUpdated(id));
+    }
+
+    private static boolean isInvalidTextEncoding(Throwable e) {
+        return NestedExceptionUtils.getMostSpecificCause(e) instanceof R2dbcException r2dbcException
+                && INVALID_TEXT_ENCODING_SQL_STATE.equals(r2dbcException.getSqlState());
+    }
+
+    public Flux<Long> addAttachmentsToNote(@NotNull Long id, @NotNull Flux<PartEvent> attachments) {
+        return Mono.zip(findMetadataById(id), attachmentService.storeAttachments(attachments))
+                .flatMapMany(tuple -> attachmentService.insertAttachments(tuple.getT2())
+                        .collectList()
+                        .filter(attachmentIds -> !attachmentIds.isEmpty())
+                        .flatMapMany(attachmentIds -> noteRepository.touch(id, NoteChangeType.ATTACHMENTS_CHANGED)
+                                .thenMany(noteAttachmentsRepository.insertAll(
+                                        tuple.getT1().getId(), attachmentIds.toArray(Long[]::new)))
+                                .thenMany(Flux.fromIterable(attachmentIds)))
+                        .as(transactionalOperator::transactional));
+    }
+
+    public Mono<RemoveAttachmentsResponse> deleteAttachments(@NotNull Long id, @NotNull List<Long> attachmentIds) {
+        var requestedIds = attachmentIds.stream().distinct().toList();
+        return findMetadataById(id)
+                .flatMap(ignored -> noteAttachmentsRepository.deleteAllByNoteId(id, requestedIds.toArray(Long[]::new))
+                        .collect(Collectors.toSet())
+                        .flatMap(removedIds -> removedIds.isEmpty()
+                                ? Mono.just(removedIds)
+                                : noteRepository.touch(id, NoteChangeType.ATTACHMENTS_CHANGED)
+                                        .thenMany(attachmentService.deleteAttachments(removedIds))
+                                        .then()
+                                        .thenReturn(removedIds))
+                        .as(transactionalOperator::transactional))
+                .map(removedIds -> new RemoveAttachmentsResponse()
+                        .setRemovedAttachments(requestedIds.stream()
+                                .filter(removedIds::contains)
+                                .toList())
+                        .setMissingAttachments(requestedIds.stream()
+                                .filter(attachmentId -> !removedIds.contains(attachmentId))
+                                .toList()));
     }
 
     private Mono<Note> findById(Long id) {
@@ -79,42 +216,256 @@ public class NoteService {
                         Mono.error(new NotFoundException("Не удалось найти заметку с ИД " + id))));
     }
 
+    private Mono<NoteMetadata> findMetadataById(Long id) {
+        return noteRepository.findMetadataById(id)
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new NotFoundException("Не удалось найти заметку с ИД " + id))));
+    }
+
     public Mono<GetNoteResponse> getNoteById(@NotNull Long id) {
-        return Mono.zip(findById(id),
-                        noteAttachmentsRepository.findAllByNoteId(id)
-                                .map(NoteAttachments::getAttachmentId)
-                                .collectList())
-                .map(tuple -> mapToGetNoteResponse(tuple.getT1(), tuple.getT2()));
+        return noteRepository.findDetailsById(id)
+                .switchIfEmpty(Mono.defer(() ->
+                        Mono.error(new NotFoundException("Не удалось найти заметку с ИД " + id))))
+                .map(NoteService::mapToGetNoteResponse);
+    }
+
+    public Flux<NoteContentResponse> getNotesBatch(@NotNull Long userId, @NotNull GetNotesBatchRequest request) {
+        var ids = Objects.requireNonNullElse(request.getIds(), List.<Long>of()).stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (ids.isEmpty() || ids.size() > applicationProperties.getMaxNotesPageSize()) {
+            throw new BadRequestException(
+                    "Количество заметок в запросе должно быть от 1 до " + applicationProperties.getMaxNotesPageSize());
+        }
+        return noteRepository.findContentsByUserIdAndIdIn(userId, ids.toArray(Long[]::new), request.isIncludeText())
+                .map(note -> mapToNoteContentResponse(note, request.isIncludeText()));
     }
 
-    public Mono<GetNotesResponse> getNotes(@NotNull Long userId) {
-        return noteRepository.findByUserId(userId)
-                .map(NoteService::mapToGetNoteResponse)
+    public Mono<GetNoteChangesResponse> getNoteChanges(@NotNull Long userId, Long since, Integer limit) {
+        if (since != null && since < 0) {
+            throw new BadRequestException("Номер изменения не может быть отрицательным");
+        }
+        var pageSize = resolvePageSize(limit);
+        var after = since == null ? 0L : since;
+        return noteRepository.findChangesByUserIdAfter(userId, after, pageSize + 1)
                 .collectList()
-                .map(notes -> new GetNotesResponse().setNotes(notes));
+                .map(page -> {
+                    var hasMore = page.size() > pageSize;
+                    var notes = hasMore ? page.subList(0, pageSize) : page;
+                    return new GetNoteChangesResponse()
+                            .setNotes(notes.stream()
+                                    .map(NoteService::mapToNoteContentResponse)
+                                    .toList())
+                            .setChangeSeq(notes.isEmpty() ? after : notes.get(notes.size() - 1).getChangeSeq())
+                            .setHasMore(hasMore);
+                });
     }
 
-    public Mono<Void> getNoteText(@NotNull Long id, @NotNull ServerHttpResponse response) {
-        return findById(id)
-                .map(Note::getText)
-                .flatMap(text -> {
-                    response.setStatusCode(OK);
-                    response.getHeaders().setContentType(MediaType.TEXT_HTML);
-                    response.getHeaders().setContentDisposition(
-                            ContentDisposition.attachment()
-                                    .filename("note_%d_text".formatted(id))
-                                    .build()
-                    );
-                    return response.writeWith(Mono.just(response.bufferFactory().wrap(text)));
+    private NoteContentResponse mapToNoteContentResponse(NoteContent note, boolean includeText) {
+        var text = includeText ? noteTextCodec.decode(note.getText(), note.getTextCodec()) : null;
+        return new NoteContentResponse()
+                .setId(note.getId())
+                .setIsAttached(note.isAttached())
+                .setName(note.getName())
+                .setVersion(note.getVersion())
+                .setChangeSeq(note.getChangeSeq())
+                .setAttachmentDetails(mapToAttachmentMetadata(
+                        note.getAttachmentIds(),
+                        note.getAttachmentExtensions(),
+                        note.getAttachmentSizes(),
+                        note.getAttachmentHashes()))
+                .setTextHash(note.getTextHash())
+                .setText(text == null ? null : new String(text, StandardCharsets.UTF_8));
+    }
+
+    public Mono<GetNotesResponse> getNotes(@NotNull Long userId, Integer limit, String cursor) {
+        var pageSize = resolvePageSize(limit);
+        var summaries = cursor == null
+                ? noteRepository.findSummariesByUserId(userId, pageSize + 1)
+                : findSummariesAfter(userId, decodeCursor(cursor), pageSize + 1);
+        return summaries.collectList()
+                .map(page -> {
+                    var hasNext = page.size() > pageSize;
+                    var notes = hasNext ? page.subList(0, pageSize) : page;
+                    return new GetNotesResponse()
+                            .setNotes(notes.stream()
+                                    .map(NoteService::mapToGetNoteResponse)
+                                    .toList())
+                            .setNextCursor(hasNext ? encodeCursor(notes.get(notes.size() - 1)) : null);
+                });
+    }
+
+    public Mono<SearchNotesResponse> searchNotes(
+            @NotNull Long userId,
+            @NotNull String query,
+            Integer limit,
+            String cursor) {
+
+        if (query.isBlank()) {
+            throw new BadRequestException("Поисковый запрос не может быть пустым");
+        }
+        var pageSize = resolvePageSize(limit);
+        var hits = cursor == null
+                ? noteRepository.searchByUserId(userId, query, pageSize + 1)
+                : searchAfter(userId, query, decodeSearchCursor(cursor), pageSize + 1);
+        return hits.collectList()
+                .map(page -> {
+                    var hasNext = page.size() > pageSize;
+                    var notes = hasNext ? page.subList(0, pageSize) : page;
+                    return new SearchNotesResponse()
+                            .setNotes(notes.stream()
+                                    .map(NoteService::mapToNoteSearchResult)
+                                    .toList())
+                            .setNextCursor(hasNext ? encodeSearchCursor(notes.get(notes.size() - 1)) : null);
                 });
     }
 
+    public Mono<List<GetNoteResponse>> suggestNotes(@NotNull Long userId, @NotNull String query, Integer limit) {
+        if (query.isBlank()) {
+            throw new BadRequestException("Поисковый запрос не может быть пустым");
+        }
+        var pageSize = resolvePageSize(limit);
+        if (!noteSearchIndex.isEnabled()) {
+            return noteRepository.searchByUserId(userId, query, pageSize)
+                    .map(hit -> new GetNoteResponse()
+                            .setId(hit.getId())
+                            .setIsAttached(hit.isAttached())
+                            .setName(hit.getName())
+                            .setVersion(hit.getVersion()))
+                    .collectList();
+        }
+        return noteSearchIndex.search(userId, query, pageSize)
+                .map(notes -> notes.stream()
+                        .map(NoteService::mapToGetNoteResponse)
+                        .toList());
+    }
+
+    private Flux<NoteSearchHit> searchAfter(Long userId, String query, SearchCursor cursor, int limit) {
+        return noteRepository.searchByUserIdAfter(userId, query, cursor.rank(), cursor.id(), limit);
+    }
+
+    public Flux<GetNoteResponse> streamNotes(@NotNull Long userId) {
+        return noteRepository.streamSummariesByUserId(userId)
+                .map(NoteService::mapToGetNoteResponse);
+    }
+
+    private Flux<NoteSummary> findSummariesAfter(Long userId, NotesCursor cursor, int limit) {
+        return noteRepository.findSummariesByUserIdAfter(userId, cursor.isAttached(), cursor.id(), limit);
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return applicationProperties.getNotesPageSize();
+        }
+        if (limit < 1 || limit > applicationProperties.getMaxNotesPageSize()) {
+            throw new BadRequestException(
+                    "Размер страницы должен быть от 1 до " + applicationProperties.getMaxNotesPageSize());
+        }
+        return limit;
+    }
+
+    private static String encodeCursor(NoteSummary note) {
+        var value = (note.isAttached() ? "1:" : "0:") + note.getId();
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static NotesCursor decodeCursor(String cursor) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var parts = value.split(":", 2);
+            if (parts.length != 2 || !(parts[0].equals("0") || parts[0].equals("1"))) {
+                throw new BadRequestException("Некорректный курсор: " + cursor);
+            }
+            return new NotesCursor(parts[0].equals("1"), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    private static String encodeSearchCursor(NoteSearchHit hit) {
+        var value = Integer.toHexString(Float.floatToIntBits(hit.getRank())) + ":" + hit.getId();
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SearchCursor decodeSearchCursor(String cursor) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var parts = value.split(":", 2);
+            if (parts.length != 2) {
+                throw new BadRequestException("Некорректный курсор: " + cursor);
+            }
+            return new SearchCursor(
+                    Float.intBitsToFloat(Integer.parseUnsignedInt(parts[0], 16)), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    public Mono<Void> getNoteText(@NotNull Long id, @NotNull ServerWebExchange exchange) {
+        var response = exchange.getResponse();
+        return findMetadataById(id)
+                .flatMap(metadata -> {
+                    var contentEncoding = metadata.getTextCodec() != null
+                            && acceptsEncoding(exchange.getRequest().getHeaders(), metadata.getTextCodec())
+                            ? metadata.getTextCodec()
+                            : null;
+                    response.getHeaders().setCacheControl(TEXT_CACHE_CONTROL);
+                    response.getHeaders().setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+                    if (exchange.checkNotModified(getTextETag(metadata.getVersion(), contentEncoding))) {
+                        return response.setComplete();
+                    }
+                    return findById(id)
+                            .flatMap(note -> {
+                                response.setStatusCode(OK);
+                                response.getHeaders().setContentType(MediaType.TEXT_HTML);
+                                response.getHeaders().setContentDisposition(
+                                        ContentDisposition.attachment()
+                                                .filename("note_%d_text".formatted(id))
+                                                .build()
+                                );
+                                var noteEncoding = note.getTextCodec() != null
+                                        && acceptsEncoding(exchange.getRequest().getHeaders(), note.getTextCodec())
+                                        ? note.getTextCodec()
+                                        : null;
+                                response.getHeaders().setETag(getTextETag(note.getVersion(), noteEncoding));
+                                if (noteEncoding != null) {
+                                    response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, noteEncoding);
+                                }
+                                var text = noteEncoding != null
+                                        ? note.getText()
+                                        : noteTextCodec.decode(note.getText(), note.getTextCodec());
+                                return response.writeWith(Mono.justOrEmpty(text)
+                                        .map(content -> response.bufferFactory().wrap(content)));
+                            });
+                });
+    }
+
+    private static String getTextETag(Long version, String contentEncoding) {
+        return contentEncoding == null ? VersionUtils.toETag(version) : VersionUtils.toWeakETag(version);
+    }
+
+    private static boolean acceptsEncoding(HttpHeaders headers, String coding) {
+        return headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(value -> value.trim().split(";"))
+                .anyMatch(parts -> (parts[0].trim().equalsIgnoreCase(coding) || parts[0].trim().equals("*"))
+                        && Arrays.stream(parts).skip(1)
+                                .map(String::trim)
+                                .noneMatch(parameter -> parameter.matches("q=0(\\.0{0,3})?")));
+    }
+
     public Mono<Void> getNoteAttachment(
             @NotNull Long id,
             @NotNull Long attachmentId,
-            @NotNull ServerHttpResponse response) {
+            @NotNull ServerWebExchange exchange) {
 
-        return findById(id)
+        var response = exchange.getResponse();
+        return findMetadataById(id)
                 .flatMap(ignored -> attachmentService.getAttachmentById(attachmentId))
                 .flatMap(attachment -> noteAttachmentsRepository.findByNoteIdAndAttachmentId(id, attachmentId)
                         .switchIfEmpty(Mono.defer(() ->
@@ -123,33 +474,179 @@ public class NoteService {
                                                 "У заметки с ИД %d нет файла с ИД %d".formatted(id, attachmentId)))))
                         .thenReturn(attachment))
                 .flatMap(attachment -> {
-                    response.setStatusCode(OK);
                     response.getHeaders().set("Content-Type", attachment.getExtension().getContentType());
+                    response.getHeaders().set(HttpHeaders.ACCEPT_RANGES, "bytes");
                     response.getHeaders().setContentDisposition(
                             ContentDisposition.attachment()
                                     .filename("note_%d_file".formatted(id))
                                     .build()
                     );
-                    return response.writeWith(Mono.just(response.bufferFactory().wrap(attachment.getFile())));
+                    if (attachment.getBlobKey() != null) {
+                        response.getHeaders().setCacheControl(ATTACHMENT_CACHE_CONTROL);
+                        if (exchange.checkNotModified(HashUtils.toETag(attachment.getBlobKey()))) {
+                            return response.setComplete();
+                        }
+                    }
+                    return attachmentService.writeAttachmentContent(
+                            attachment, exchange.getRequest().getHeaders(), response);
                 });
     }
 
-    public Mono<Long> attachNote(@NotNull Long id) {
-        return findById(id)
-                .flatMap(note -> noteRepository.save(note.setAttached(true)))
-                .map(Note::getId);
+    public Mono<Long> attachNote(@NotNull Long id, Long version) {
+        return noteRepository.updateAttached(id, true, version)
+                .doOnNext(updated -> noteSearchIndex.onAttachedChanged(
+                        updated.getUserId(), id, true, updated.getVersion()))
+                .flatMap(updated -> cacheInvalidationService.publishNoteChanged(updated.getUserId(), id)
+                        .thenReturn(updated.getVersion()))
+                .switchIfEmpty(noteNotUpdated(id));
+    }
+
+    private <T> Mono<T> noteNotUpdated(Long id) {
+        return Mono.defer(() -> noteRepository.existsById(id)
+                .flatMap(exists -> Mono.error(exists
+                        ? new PreconditionFailedException(
+                                "Версия заметки с ИД %d не совпадает с указанной в If-Match".formatted(id))
+                        : new NotFoundException("Не удалось найти заметку с ИД " + id))));
+    }
+
+    private static GetNoteResponse mapToGetNoteResponse(NoteSummary note) {
+        return new GetNoteResponse()
+                .setId(note.getId())
+                .setIsAttached(note.isAttached())
+                .setName(note.getName())
+                .setVersion(note.getVersion());
+    }
+
+    private static NoteContentResponse mapToNoteContentResponse(NoteChange note) {
+        return new NoteContentResponse()
+                .setId(note.getId())
+                .setIsAttached(note.isAttached())
+                .setName(note.getName())
+                .setVersion(note.getVersion())
+                .setChangeSeq(note.getChangeSeq())
+                .setAttachmentDetails(mapToAttachmentMetadata(
+                        note.getAttachmentIds(),
+                        note.getAttachmentExtensions(),
+                        note.getAttachmentSizes(),
+                        note.getAttachmentHashes()))
+                .setTextHash(note.getTextHash());
+    }
+
+    private static List<AttachmentMetadataResponse> mapToAttachmentMetadata(
+            Long[] ids,
+            String[] extensions,
+            Long[] sizes,
+            String[] hashes) {
+
+        var attachments = new ArrayList<AttachmentMetadataResponse>();
+        for (int i = 0; ids != null && i < ids.length; i++) {
+            attachments.add(new AttachmentMetadataResponse()
+                    .setId(ids[i])
+                    .setExtension(FileExtension.valueOf(extensions[i]))
+                    .setSize(sizes[i])
+                    .setHash(hashes[i]));
+        }
+        return attachments;
     }
 
-    private static GetNoteResponse mapToGetNoteResponse(Note note) {
+    private static NoteSearchResult mapToNoteSearchResult(NoteSearchHit hit) {
+        return new NoteSearchResult()
+                .setId(hit.getId())
+                .setIsAttached(hit.isAttached())
+                .setName(hit.getName())
+                .setVersion(hit.getVersion())
+                .setRank(hit.getRank())
+                .setSnippet(hit.getSnippet());
+    }
+
+    private static GetNoteResponse mapToGetNoteResponse(NoteDetails note) {
+        var attachments = mapToAttachmentMetadata(
+                note.getAttachmentIds(),
+                note.getAttachmentExtensions(),
+                note.getAttachmentSizes(),
+                note.getAttachmentHashes());
         return new GetNoteResponse()
                 .setId(note.getId())
                 .setIsAttached(note.isAttached())
-                .setName(note.getName());
+                .setName(note.getName())
+                .setVersion(note.getVersion())
+                .setAttachments(attachments.stream()
+                        .map(AttachmentMetadataResponse::getId)
+                        .toList())
+                .setAttachmentDetails(attachments);
+    }
+
+    private record NotesCursor(boolean isAttached, long id) {
+    }
+
+    private record SearchCursor(float rank, long id) {
     }
 
-    private static GetNoteResponse mapToGetNoteResponse(Note note, List<Long> attachmentIds) {
-        return mapToGetNoteResponse(note)
-                .setAttachments(attachmentIds);
+    private record TextPatch(
+            Integer[] positions,
+            Integer[] lengths,
+            Integer[] dataLengths,
+            byte[] data,
+            int tailStart) {
+
+        static TextPatch of(List<TextOperation> operations) {
+            if (operations == null || operations.isEmpty()) {
+                throw new BadRequestException("Список изменений текста не может быть пустым");
+            }
+            var positions = new Integer[operations.size()];
+            var lengths = new Integer[operations.size()];
+            var dataLengths = new Integer[operations.size()];
+            var data = new ByteArrayOutputStream();
+            var previousEnd = 0;
+            for (int i = 0; i < operations.size(); i++) {
+                var operation = operations.get(i);
+                var deleteLength = operation.getDeleteLength() == null ? 0 : operation.getDeleteLength();
+                if (operation.getPosition() == null || operation.getPosition() < previousEnd || deleteLength < 0) {
+                    throw new BadRequestException(
+                            "Изменения текста должны идти по возрастанию позиции и не пересекаться");
+                }
+                if (deleteLength > Integer.MAX_VALUE - operation.getPosition()) {
+                    throw new BadRequestException("Изменение текста выходит за пределы текста");
+                }
+                var insert = operation.getInsert() == null
+                        ? new byte[0]
+                        : operation.getInsert().getBytes(StandardCharsets.UTF_8);
+                positions[i] = operation.getPosition();
+                lengths[i] = deleteLength;
+                dataLengths[i] = insert.length;
+                data.writeBytes(insert);
+                previousEnd = operation.getPosition() + deleteLength;
+            }
+            return new TextPatch(positions, lengths, dataLengths, data.toByteArray(), previousEnd);
+        }
+
+        boolean splitsCharacter(byte[] text) {
+            for (int i = 0; i < positions.length; i++) {
+                if (isContinuationByte(text, positions[i]) || isContinuationByte(text, positions[i] + lengths[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isContinuationByte(byte[] text, int position) {
+            return position < text.length && (text[position] & 0xC0) == 0x80;
+        }
+
+        byte[] apply(byte[] text) {
+            var result = new ByteArrayOutputStream(text.length + data.length);
+            var previousEnd = 0;
+            var dataStart = 0;
+            for (int i = 0; i < positions.length; i++) {
+                result.write(text, previousEnd, positions[i] - previousEnd);
+                result.write(data, dataStart, dataLengths[i]);
+                previousEnd = positions[i] + lengths[i];
+                dataStart += dataLengths[i];
+            }
+            result.write(text, tailStart, text.length - tailStart);
+            return result.toByteArray();
+        }
+
     }
 
 }
@@ -0,0 +1,84 @@
+package ru.vsu.csf.mynotes.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Service;
+import ru.vsu.csf.mynotes.configuration.property.JwtProperties;
+import ru.vsu.csf.mynotes.exception.UnauthorizedException;
+import ru.vsu.csf.mynotes.model.dto.LoginUserResponse;
+import ru.vsu.csf.mynotes.model.entity.User;
+
+import java.time.Duration;
+import java.time.Instant;
+
+@Service
+public class TokenService {
+
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    private static final String TYPE_CLAIM = "type";
+    private static final String ACCESS_TOKEN_TYPE = "access";
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    private final JwtProperties jwtProperties;
+    private final Algorithm algorithm;
+    private final JWTVerifier accessTokenVerifier;
+    private final JWTVerifier refreshTokenVerifier;
+
+    public TokenService(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+        this.algorithm = Algorithm.HMAC256(jwtProperties.getSecret());
+        this.accessTokenVerifier = createVerifier(ACCESS_TOKEN_TYPE);
+        this.refreshTokenVerifier = createVerifier(REFRESH_TOKEN_TYPE);
+    }
+
+    public LoginUserResponse issueTokens(@NotNull User user) {
+        return new LoginUserResponse()
+                .setId(user.getId())
+                .setAccessToken(createToken(user, ACCESS_TOKEN_TYPE, jwtProperties.getAccessTokenTtl()))
+                .setRefreshToken(createToken(user, REFRESH_TOKEN_TYPE, jwtProperties.getRefreshTokenTtl()))
+                .setExpiresIn(jwtProperties.getAccessTokenTtl().toSeconds());
+    }
+
+    public DecodedJWT verifyAccessToken(@NotNull String token) {
+        return verify(accessTokenVerifier, token);
+    }
+
+    public DecodedJWT verifyRefreshToken(@NotNull String token) {
+        return verify(refreshTokenVerifier, token);
+    }
+
+    private String createToken(User user, String type, Duration ttl) {
+        var now = Instant.now();
+        return JWT.create()
+                .withIssuer(jwtProperties.getIssuer())
+                .withSubject(user.getEmail())
+                .withClaim(USER_ID_CLAIM, user.getId())
+                .withClaim(ROLE_CLAIM, user.getRole())
+                .withClaim(TYPE_CLAIM, type)
+                .withIssuedAt(now)
+                .withExpiresAt(now.plus(ttl))
+                .sign(algorithm);
+    }
+
+    private JWTVerifier createVerifier(String type) {
+        return JWT.require(algorithm)
+                .withIssuer(jwtProperties.getIssuer())
+                .withClaim(TYPE_CLAIM, type)
+                .build();
+    }
+
+    private static DecodedJWT verify(JWTVerifier verifier, String token) {
+        try {
+            return verifier.verify(token);
+        } catch (JWTVerificationException e) {
+            throw new UnauthorizedException("Недействительный токен");
+        }
+    }
+
+}
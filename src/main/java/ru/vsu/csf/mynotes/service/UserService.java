@@ -5,9 +5,13 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
 import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.ConflictException;
+import ru.vsu.csf.mynotes.exception.UnauthorizedException;
 import ru.vsu.csf.mynotes.model.dto.LoginUserRequest;
+import ru.vsu.csf.mynotes.model.dto.LoginUserResponse;
+import ru.vsu.csf.mynotes.model.dto.RefreshTokenRequest;
 import ru.vsu.csf.mynotes.model.dto.RegisterUserRequest;
 import ru.vsu.csf.mynotes.model.entity.User;
 import ru.vsu.csf.mynotes.repository.UserRepository;
@@ -19,6 +23,9 @@ import static ru.vsu.csf.mynotes.configuration.security.UserDetailsService.BAD_C
 public class UserService {
 
     private final UserRepository userRepository;
+    private final TokenService tokenService;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final ApplicationProperties applicationProperties;
 
     public Mono<Long> registerUser(@NotNull RegisterUserRequest request) {
         return findByEmail(request.getEmail())
@@ -33,14 +40,15 @@ public class UserService {
                     }
                 })
                 .flatMap(userRepository::save)
-                .map(User::getId);
+                .flatMap(user -> cacheInvalidationService.publishUserChanged(user.getId(), user.getEmail())
+                        .thenReturn(user.getId()));
     }
 
     private Mono<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
-    public Mono<Long> loginUser(@NotNull LoginUserRequest request) {
+    public Mono<LoginUserResponse> loginUser(@NotNull LoginUserRequest request) {
         return findByEmail(request.getEmail())
                 .switchIfEmpty(Mono.error(
                         new BadRequestException(BAD_CREDENTIALS_MESSAGE)))
@@ -49,13 +57,24 @@ public class UserService {
                         throw new BadRequestException(BAD_CREDENTIALS_MESSAGE);
                     }
                 })
-                .map(User::getId);
+                .map(tokenService::issueTokens);
     }
 
-    private static User mapRequestToUser(RegisterUserRequest request) {
+    public Mono<LoginUserResponse> refreshTokens(@NotNull RefreshTokenRequest request) {
+        return Mono.fromCallable(() -> tokenService.verifyRefreshToken(request.getRefreshToken()))
+                .flatMap(jwt -> userRepository.findById(jwt.getClaim(TokenService.USER_ID_CLAIM).asLong()))
+                .switchIfEmpty(Mono.error(
+                        new UnauthorizedException("Пользователь не найден")))
+                .map(tokenService::issueTokens);
+    }
+
+    private User mapRequestToUser(RegisterUserRequest request) {
         return new User()
                 .setEmail(request.getEmail())
                 .setLogin(request.getLogin())
+                .setRole(applicationProperties.getAdminEmails().contains(request.getEmail())
+                        ? User.ADMIN_ROLE
+                        : User.USER_ROLE)
                 .setPasswordHash(BCrypt.hashpw(request.getPassword(), BCrypt.gensalt()));
     }
 
@@ -0,0 +1,31 @@
+package ru.vsu.csf.mynotes.storage;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+
+public interface BlobStore {
+
+    int SHARD_COUNT = 256;
+
+    Mono<StoredBlob> store(Flux<DataBuffer> content);
+
+    Flux<DataBuffer> read(String key);
+
+    Flux<DataBuffer> read(String key, long position, long length);
+
+    Mono<Boolean> deleteIfModifiedBefore(String key, Instant modifiedBefore);
+
+    Flux<StoredBlob> findModifiedBefore(String shard, Instant modifiedBefore);
+
+    Mono<Long> deleteTemporaryFilesModifiedBefore(Instant modifiedBefore);
+
+    default Optional<Path> findPath(String key) {
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,187 @@
+package ru.vsu.csf.mynotes.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ru.vsu.csf.mynotes.configuration.property.BlobStoreProperties;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+import ru.vsu.csf.mynotes.util.FilePartUtils;
+import ru.vsu.csf.mynotes.util.HashUtils;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "ru.vsu.csf.my-note.blob-store", name = "type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern SHARD_PATTERN = Pattern.compile("[0-9a-f]{2}");
+    private static final String TEMP_DIRECTORY = "tmp";
+    private static final String TEMP_FILE_SUFFIX = ".part";
+    private static final int SHARD_DEPTH = 2;
+
+    private final BlobStoreProperties blobStoreProperties;
+
+    @Override
+    public Mono<StoredBlob> store(Flux<DataBuffer> content) {
+        return Mono.fromCallable(this::createTempFile)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(tempFile -> {
+                    var digest = HashUtils.createDigest();
+                    var size = new AtomicLong();
+                    return DataBufferUtils.write(
+                                    content.doOnNext(dataBuffer -> {
+                                        size.addAndGet(dataBuffer.readableByteCount());
+                                        try (var iterator = dataBuffer.readableByteBuffers()) {
+                                            iterator.forEachRemaining(digest::update);
+                                        }
+                                    }),
+                                    tempFile)
+                            .then(Mono.fromCallable(() -> moveToShard(
+                                            tempFile, HashUtils.toHex(digest), size.get()))
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                            .onErrorResume(e -> FilePartUtils.deleteQuietly(tempFile).then(Mono.error(e)));
+                });
+    }
+
+    @Override
+    public Flux<DataBuffer> read(String key) {
+        return DataBufferUtils.read(
+                        resolve(key), DefaultDataBufferFactory.sharedInstance, blobStoreProperties.getReadBufferSize())
+                .onErrorMap(IOException.class, e ->
+                        new InternalErrorException("Не удалось прочитать файл вложения " + key));
+    }
+
+    @Override
+    public Flux<DataBuffer> read(String key, long position, long length) {
+        var path = resolve(key);
+        return DataBufferUtils.takeUntilByteCount(
+                        DataBufferUtils.readAsynchronousFileChannel(
+                                () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ),
+                                position,
+                                DefaultDataBufferFactory.sharedInstance,
+                                blobStoreProperties.getReadBufferSize()),
+                        length)
+                .onErrorMap(IOException.class, e ->
+                        new InternalErrorException("Не удалось прочитать файл вложения " + key));
+    }
+
+    @Override
+    public Mono<Boolean> deleteIfModifiedBefore(String key, Instant modifiedBefore) {
+        return Mono.fromCallable(() -> {
+                    var path = resolve(key);
+                    var stale = readAttributes(path)
+                            .map(attributes -> attributes.lastModifiedTime().toInstant().isBefore(modifiedBefore))
+                            .orElse(false);
+                    return stale && Files.deleteIfExists(path);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<StoredBlob> findModifiedBefore(String shard, Instant modifiedBefore) {
+        if (!SHARD_PATTERN.matcher(shard).matches()) {
+            return Flux.error(new InternalErrorException("Некорректный каталог файлов вложений " + shard));
+        }
+        return findFilesModifiedBefore(getRoot().resolve(shard), SHARD_DEPTH, modifiedBefore)
+                .filter(file -> file.path().getFileName().toString().startsWith(shard)
+                        && KEY_PATTERN.matcher(file.path().getFileName().toString()).matches())
+                .map(file -> new StoredBlob(file.path().getFileName().toString(), file.size()));
+    }
+
+    @Override
+    public Mono<Long> deleteTemporaryFilesModifiedBefore(Instant modifiedBefore) {
+        return findFilesModifiedBefore(getRoot().resolve(TEMP_DIRECTORY), 1, modifiedBefore)
+                .filter(file -> file.path().getFileName().toString().endsWith(TEMP_FILE_SUFFIX))
+                .concatMap(file -> FilePartUtils.deleteQuietly(file.path()).thenReturn(file.size()))
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Optional<Path> findPath(String key) {
+        return Optional.of(resolve(key));
+    }
+
+    Path resolve(String key) {
+        if (!KEY_PATTERN.matcher(key).matches()) {
+            throw new InternalErrorException("Некорректный ключ файла вложения " + key);
+        }
+        return getRoot().resolve(key.substring(0, 2))
+                .resolve(key.substring(2, 4))
+                .resolve(key);
+    }
+
+    private StoredBlob moveToShard(Path tempFile, String key, long size) throws IOException {
+        var target = resolve(key);
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            Files.deleteIfExists(tempFile);
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return new StoredBlob(key, size);
+        }
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(tempFile);
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        }
+        return new StoredBlob(key, size);
+    }
+
+    private Flux<StoredFile> findFilesModifiedBefore(Path directory, int depth, Instant modifiedBefore) {
+        return Flux.defer(() -> {
+                    if (!Files.isDirectory(directory)) {
+                        return Flux.empty();
+                    }
+                    return Flux.using(
+                            () -> Files.walk(directory, depth),
+                            paths -> Flux.fromStream(paths.filter(Files::isRegularFile)),
+                            Stream::close);
+                })
+                .concatMap(path -> Mono.justOrEmpty(readAttributes(path))
+                        .filter(attributes -> attributes.lastModifiedTime().toInstant().isBefore(modifiedBefore))
+                        .map(attributes -> new StoredFile(path, attributes.size())))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Optional<BasicFileAttributes> readAttributes(Path path) {
+        try {
+            return Optional.of(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path createTempFile() throws IOException {
+        var directory = Files.createDirectories(getRoot().resolve(TEMP_DIRECTORY));
+        return Files.createTempFile(directory, null, TEMP_FILE_SUFFIX);
+    }
+
+    private Path getRoot() {
+        return Path.of(blobStoreProperties.getPath());
+    }
+
+    private record StoredFile(Path path, long size) {
+    }
+
+}
@@ -0,0 +1,4 @@
+package ru.vsu.csf.mynotes.storage;
+
+public record StoredBlob(String key, long size) {
+}
@@ -1,12 +1,19 @@
 package ru.vsu.csf.mynotes.util;
 
 import lombok.experimental.UtilityClass;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.InternalErrorException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
 @UtilityClass
 public class FilePartUtils {
 
@@ -22,4 +29,34 @@ public class FilePartUtils {
                 });
     }
 
+    public static Flux<DataBuffer> getLimitedContent(Flux<DataBuffer> content, int maxSizeMb) {
+        var maxSize = fromMegaBytesToBytes(maxSizeMb);
+        return Flux.defer(() -> {
+            var received = new AtomicLong();
+            return content
+                    .handle((dataBuffer, sink) -> {
+                        var size = received.addAndGet(dataBuffer.readableByteCount());
+                        if (size > maxSize) {
+                            DataBufferUtils.release(dataBuffer);
+                            sink.error(new BadRequestException(
+                                    "Размер файла превышает максимальное число Мбайт: %s (в файле более %s)"
+                                            .formatted(maxSizeMb, size)));
+                            return;
+                        }
+                        sink.next(dataBuffer);
+                    });
+        });
+    }
+
+    public static Mono<Void> deleteQuietly(Path path) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(path))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorReturn(false)
+                .then();
+    }
+
+    private static long fromMegaBytesToBytes(int megaBytes) {
+        return (long) megaBytes * 1024 * 1024;
+    }
+
 }
@@ -0,0 +1,37 @@
+package ru.vsu.csf.mynotes.util;
+
+import lombok.experimental.UtilityClass;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@UtilityClass
+public class HashUtils {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalErrorException("Алгоритм %s не поддерживается".formatted(HASH_ALGORITHM));
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        var digest = createDigest();
+        digest.update(bytes);
+        return toHex(digest);
+    }
+
+    public static String toETag(String hash) {
+        return "\"" + hash + "\"";
+    }
+
+}
@@ -0,0 +1,27 @@
+package ru.vsu.csf.mynotes.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+@UtilityClass
+public class PlainTextUtils {
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]*>");
+
+    public static String fromHtml(byte[] html) {
+        if (html == null) {
+            return null;
+        }
+        return TAG_PATTERN.matcher(new String(html, StandardCharsets.UTF_8))
+                .replaceAll(" ")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+    }
+
+}
@@ -0,0 +1,38 @@
+package ru.vsu.csf.mynotes.util;
+
+import lombok.experimental.UtilityClass;
+import ru.vsu.csf.mynotes.exception.BadRequestException;
+
+@UtilityClass
+public class VersionUtils {
+
+    private static final String ANY_VERSION = "*";
+    private static final String WEAK_PREFIX = "W/";
+
+    public static String toETag(long version) {
+        return "\"%d\"".formatted(version);
+    }
+
+    public static String toWeakETag(long version) {
+        return WEAK_PREFIX + toETag(version);
+    }
+
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY_VERSION)) {
+            return null;
+        }
+        var value = ifMatch.trim();
+        if (value.startsWith(WEAK_PREFIX)) {
+            value = value.substring(WEAK_PREFIX.length());
+        }
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            throw new BadRequestException("Некорректное значение заголовка If-Match: " + ifMatch);
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Некорректное значение заголовка If-Match: " + ifMatch);
+        }
+    }
+
+}
@@ -3,23 +3,72 @@ CREATE TABLE IF NOT EXISTS user_info(
     login VARCHAR(100) NOT NULL,
     password_hash VARCHAR(100) NOT NULL,
     email VARCHAR(200) NOT NULL UNIQUE,
-    role VARCHAR(100) NOT NULL DEFAULT 'USER'
+    role VARCHAR(100) NOT NULL DEFAULT 'USER',
+    change_seq BIGINT NOT NULL DEFAULT 0
 );
 CREATE UNIQUE INDEX IF NOT EXISTS user_info_email_index ON user_info(email);
+ALTER TABLE user_info ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT 0;
 
 CREATE TABLE IF NOT EXISTS note(
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(100),
     text BYTEA,
-    is_attached BOOLEAN DEFAULT FALSE,
-    user_id INTEGER NOT NULL REFERENCES user_info(id)
+    is_attached BOOLEAN NOT NULL DEFAULT FALSE,
+    user_id INTEGER NOT NULL REFERENCES user_info(id),
+    text_hash VARCHAR(64),
+    version BIGINT NOT NULL DEFAULT 0,
+    text_codec VARCHAR(16),
+    plain_text TEXT,
+    change_seq BIGINT NOT NULL DEFAULT 0,
+    text_patched_at TIMESTAMPTZ,
+    text_vector TSVECTOR,
+    search_document TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', COALESCE(name, '')), 'A') || COALESCE(text_vector, ''::tsvector)) STORED
 );
+ALTER TABLE note ADD COLUMN IF NOT EXISTS text_codec VARCHAR(16);
+ALTER TABLE note ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE note ADD COLUMN IF NOT EXISTS text_hash VARCHAR(64);
+UPDATE note SET text_hash = encode(sha256(text), 'hex') WHERE text_hash IS NULL AND text IS NOT NULL;
+UPDATE note SET is_attached = FALSE WHERE is_attached IS NULL;
+ALTER TABLE note ALTER COLUMN is_attached SET NOT NULL;
+CREATE INDEX IF NOT EXISTS note_user_id_is_attached_id_index ON note(user_id, is_attached DESC, id);
+ALTER TABLE note ADD COLUMN IF NOT EXISTS plain_text TEXT;
+ALTER TABLE note ADD COLUMN IF NOT EXISTS text_vector TSVECTOR;
+ALTER TABLE note DROP COLUMN IF EXISTS search_vector;
+UPDATE note SET text_vector = setweight(to_tsvector('russian', plain_text), 'B')
+WHERE text_vector IS NULL AND plain_text IS NOT NULL;
+ALTER TABLE note ADD COLUMN IF NOT EXISTS search_document TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', COALESCE(name, '')), 'A') || COALESCE(text_vector, ''::tsvector)) STORED;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+CREATE INDEX IF NOT EXISTS note_user_id_search_document_index ON note USING GIN (user_id, search_document);
+ALTER TABLE note ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT 0;
+WITH numbered AS (
+    SELECT id, user_id, row_number() OVER (PARTITION BY user_id ORDER BY id) AS seq
+    FROM note
+    WHERE change_seq = 0)
+UPDATE note n SET change_seq = u.change_seq + numbered.seq
+FROM numbered
+JOIN user_info u ON u.id = numbered.user_id
+WHERE n.id = numbered.id;
+UPDATE user_info u SET change_seq = m.change_seq
+FROM (SELECT user_id, max(change_seq) AS change_seq FROM note GROUP BY user_id) m
+WHERE u.id = m.user_id AND u.change_seq < m.change_seq;
+CREATE INDEX IF NOT EXISTS note_user_id_change_seq_index ON note(user_id, change_seq);
+ALTER TABLE note ADD COLUMN IF NOT EXISTS text_patched_at TIMESTAMPTZ;
+CREATE INDEX IF NOT EXISTS note_text_patched_at_index ON note(text_patched_at) WHERE text_patched_at IS NOT NULL;
 
 CREATE TABLE IF NOT EXISTS attachment(
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     file BYTEA,
-    extension VARCHAR(6)
+    extension VARCHAR(6),
+    blob_key VARCHAR(64),
+    size BIGINT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+ALTER TABLE attachment ADD COLUMN IF NOT EXISTS created_at TIMESTAMPTZ NOT NULL DEFAULT now();
+ALTER TABLE attachment ADD COLUMN IF NOT EXISTS blob_key VARCHAR(64);
+ALTER TABLE attachment ADD COLUMN IF NOT EXISTS size BIGINT;
+UPDATE attachment SET size = octet_length(file) WHERE size IS NULL AND file IS NOT NULL;
 
 ALTER TABLE attachment DROP CONSTRAINT IF EXISTS attachment_extension_constraint;
 ALTER TABLE attachment
@@ -30,3 +79,20 @@ CREATE TABLE IF NOT EXISTS note_attachments(
     note_id INTEGER NOT NULL REFERENCES note(id),
     attachment_id INTEGER NOT NULL REFERENCES attachment(id)
 );
+CREATE INDEX IF NOT EXISTS note_attachments_attachment_id_index ON note_attachments(attachment_id);
+
+WITH duplicate AS (
+    SELECT id, min(id) OVER (PARTITION BY blob_key, extension) AS keep_id
+    FROM attachment
+    WHERE blob_key IS NOT NULL)
+UPDATE note_attachments na SET attachment_id = d.keep_id
+FROM duplicate d
+WHERE na.attachment_id = d.id AND d.id <> d.keep_id;
+DELETE FROM attachment a USING attachment b
+WHERE a.blob_key = b.blob_key AND a.extension = b.extension AND a.id > b.id;
+DROP INDEX IF EXISTS attachment_blob_key_index;
+CREATE UNIQUE INDEX IF NOT EXISTS attachment_blob_key_extension_index ON attachment(blob_key, extension);
+
+DELETE FROM note_attachments a USING note_attachments b
+WHERE a.note_id = b.note_id AND a.attachment_id = b.attachment_id AND a.id > b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS note_attachments_note_id_attachment_id_index ON note_attachments(note_id, attachment_id);
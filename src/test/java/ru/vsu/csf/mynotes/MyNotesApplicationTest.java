@@ -0,0 +1,21 @@
+package ru.vsu.csf.mynotes;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "ru.vsu.csf.my-note.blob-store.migration.enabled=true",
+                "ru.vsu.csf.my-note.garbage-collector.enabled=true",
+                "ru.vsu.csf.my-note.search-index.enabled=true",
+                "ru.vsu.csf.my-note.text-compression.recompression.enabled=true"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MyNotesApplicationTest {
+
+    @Test
+    void contextLoadsWithScheduledJobsTest() {
+    }
+
+}
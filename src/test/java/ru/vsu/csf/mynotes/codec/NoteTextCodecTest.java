@@ -0,0 +1,69 @@
+package ru.vsu.csf.mynotes.codec;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.vsu.csf.mynotes.configuration.property.TextCompressionProperties;
+import ru.vsu.csf.mynotes.exception.InternalErrorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteTextCodecTest {
+
+    private static final int THRESHOLD = 64;
+
+    private TextCompressionProperties properties;
+
+    private NoteTextCodec noteTextCodec;
+
+    @BeforeEach
+    void setUp() {
+        properties = new TextCompressionProperties();
+        properties.setCodec("gzip");
+        properties.setThreshold(THRESHOLD);
+        noteTextCodec = new NoteTextCodec(List.of(new GzipTextCodec()), properties);
+    }
+
+    @Test
+    void encodeCompressesLargeTextTest() {
+        var text = "<p>note</p>".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        var encoded = noteTextCodec.encode(text);
+
+        assertEquals("gzip", encoded.codec());
+        assertTrue(encoded.content().length < text.length);
+        assertArrayEquals(text, noteTextCodec.decode(encoded.content(), encoded.codec()));
+    }
+
+    @Test
+    void encodeKeepsSmallTextTest() {
+        var text = "<p>note</p>".getBytes(StandardCharsets.UTF_8);
+
+        var encoded = noteTextCodec.encode(text);
+
+        assertNull(encoded.codec());
+        assertSame(text, encoded.content());
+    }
+
+    @Test
+    void encodeKeepsTextWhenCodecDisabledTest() {
+        properties.setCodec("none");
+        var text = "<p>note</p>".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        var encoded = noteTextCodec.encode(text);
+
+        assertNull(encoded.codec());
+        assertSame(text, encoded.content());
+    }
+
+    @Test
+    void decodeThrowsExceptionForUnknownCodecTest() {
+        assertThatThrownBy(() -> noteTextCodec.decode(new byte[]{1}, "br"))
+                .isInstanceOf(InternalErrorException.class)
+                .hasMessage("Неизвестный формат сжатия текста заметки br");
+    }
+
+}
@@ -0,0 +1,124 @@
+package ru.vsu.csf.mynotes.configuration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.multipart.MultipartHttpMessageReader;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.codec.multipart.PartEventHttpMessageReader;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.util.MultiValueMap;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+class WebConfigTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final String BOUNDARY = "mynotes-boundary";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNK_COUNT = 64;
+    private static final ResolvableType PART_EVENT_TYPE = ResolvableType.forClass(PartEvent.class);
+    private static final ResolvableType MULTIPART_DATA_TYPE =
+            ResolvableType.forClassWithGenerics(MultiValueMap.class, String.class, Part.class);
+
+    private ServerCodecConfigurer configurer;
+
+    @BeforeEach
+    void setUp() {
+        configurer = ServerCodecConfigurer.create();
+        new WebConfig().configureHttpMessageCodecs(configurer);
+    }
+
+    @Test
+    void partEventReaderStreamsFileContentTest() {
+        var body = Flux.concat(
+                Flux.just(partHeader(false, true)),
+                Flux.range(0, CHUNK_COUNT).map(i -> new byte[CHUNK_SIZE]),
+                Flux.just(closingBoundary()));
+
+        StepVerifier.create(getReader(PartEventHttpMessageReader.class)
+                        .read(PART_EVENT_TYPE, createRequest(body), Map.of())
+                        .map(PartEvent::content)
+                        .map(dataBuffer -> {
+                            var size = dataBuffer.readableByteCount();
+                            DataBufferUtils.release(dataBuffer);
+                            return (long) size;
+                        })
+                        .reduce(0L, Long::sum))
+                .expectNext((long) CHUNK_SIZE * CHUNK_COUNT)
+                .expectComplete()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void partEventReaderLimitsFormFieldSizeTest() {
+        var body = Flux.concat(
+                Flux.just(partHeader(false, false)),
+                Flux.range(0, CHUNK_COUNT).map(i -> new byte[CHUNK_SIZE]),
+                Flux.just(closingBoundary()));
+
+        StepVerifier.create(getReader(PartEventHttpMessageReader.class)
+                        .read(PART_EVENT_TYPE, createRequest(body), Map.of())
+                        .doOnNext(event -> DataBufferUtils.release(event.content())))
+                .expectError(DataBufferLimitException.class)
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void multipartReaderDoesNotApplyAttachmentLimitsTest() {
+        var body = Flux.concat(
+                Flux.range(0, 3).map(i -> concat(partHeader(i > 0, true), "text".getBytes(StandardCharsets.UTF_8))),
+                Flux.just(closingBoundary()));
+
+        StepVerifier.create(getReader(MultipartHttpMessageReader.class)
+                        .readMono(MULTIPART_DATA_TYPE, createRequest(body), Map.of())
+                        .map(parts -> parts.get("attachments").size()))
+                .expectNext(3)
+                .expectComplete()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    private <T> T getReader(Class<T> readerClass) {
+        return configurer.getReaders().stream()
+                .filter(readerClass::isInstance)
+                .map(readerClass::cast)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static MockServerHttpRequest createRequest(Flux<byte[]> body) {
+        return MockServerHttpRequest.post("/")
+                .contentType(new MediaType(MediaType.MULTIPART_FORM_DATA, Map.of("boundary", BOUNDARY)))
+                .body(body.map(DefaultDataBufferFactory.sharedInstance::wrap));
+    }
+
+    private static byte[] partHeader(boolean afterPart, boolean file) {
+        return ((afterPart ? "\r\n" : "") + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"attachments\""
+                + (file ? "; filename=\"file.txt\"" : "") + "\r\n"
+                + "Content-Type: text/plain\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] closingBoundary() {
+        return ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        var result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+}
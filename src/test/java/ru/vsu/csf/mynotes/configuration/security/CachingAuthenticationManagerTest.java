@@ -0,0 +1,86 @@
+package ru.vsu.csf.mynotes.configuration.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.CredentialsCache;
+import ru.vsu.csf.mynotes.configuration.property.CacheProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingAuthenticationManagerTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final String EMAIL = "user@mail.ru";
+    private static final String PASSWORD = "password12345";
+
+    @Mock
+    private ReactiveAuthenticationManager delegate;
+
+    private CredentialsCache credentialsCache;
+
+    private CachingAuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void setUp() {
+        var cacheProperties = new CacheProperties();
+        cacheProperties.getCredentials().setMaxSize(10);
+        cacheProperties.getCredentials().setTtl(Duration.ofMinutes(1));
+        credentialsCache = new CredentialsCache(cacheProperties);
+        authenticationManager = new CachingAuthenticationManager(delegate, credentialsCache);
+    }
+
+    @Test
+    void authenticateUsesCacheForSameCredentialsTest() {
+        var authenticated = UsernamePasswordAuthenticationToken.authenticated(EMAIL, null, List.of());
+        when(delegate.authenticate(any())).thenReturn(Mono.just(authenticated));
+
+        authenticationManager.authenticate(createToken(PASSWORD)).block(RESPONSE_TIMEOUT);
+        var result = authenticationManager.authenticate(createToken(PASSWORD)).block(RESPONSE_TIMEOUT);
+
+        assertEquals(authenticated, result);
+        verify(delegate, times(1)).authenticate(any());
+    }
+
+    @Test
+    void authenticateDoesNotCacheFailedCredentialsTest() {
+        when(delegate.authenticate(any())).thenReturn(Mono.error(new BadCredentialsException("bad")));
+
+        assertThatThrownBy(() -> authenticationManager.authenticate(createToken("wrong")).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> authenticationManager.authenticate(createToken("wrong")).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadCredentialsException.class);
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void authenticateChecksPasswordAgainAfterInvalidationTest() {
+        var authenticated = UsernamePasswordAuthenticationToken.authenticated(EMAIL, null, List.of());
+        when(delegate.authenticate(any())).thenReturn(Mono.just(authenticated));
+
+        authenticationManager.authenticate(createToken(PASSWORD)).block(RESPONSE_TIMEOUT);
+        credentialsCache.invalidateUser(EMAIL);
+        authenticationManager.authenticate(createToken(PASSWORD)).block(RESPONSE_TIMEOUT);
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    private static UsernamePasswordAuthenticationToken createToken(String password) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, password);
+    }
+
+}
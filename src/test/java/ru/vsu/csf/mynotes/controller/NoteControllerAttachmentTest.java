@@ -0,0 +1,204 @@
+package ru.vsu.csf.mynotes.controller;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+import ru.vsu.csf.mynotes.model.dto.ErrorResponse;
+import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.entity.User;
+import ru.vsu.csf.mynotes.repository.AttachmentRepository;
+import ru.vsu.csf.mynotes.repository.NoteAttachmentsRepository;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+import ru.vsu.csf.mynotes.repository.UserRepository;
+import ru.vsu.csf.mynotes.service.TokenService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "ru.vsu.csf.my-note.max-file-amount=2",
+                "ru.vsu.csf.my-note.max-file-size-mb=1"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class NoteControllerAttachmentTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+    private static final String EMAIL = "attachments@mail.ru";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNK_COUNT = 64;
+    private static final NettyDataBufferFactory BUFFER_FACTORY =
+            new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private NoteAttachmentsRepository noteAttachmentsRepository;
+
+    private WebTestClient webTestClient;
+
+    private Long noteId;
+
+    @BeforeEach
+    void setUp() {
+        noteAttachmentsRepository.deleteAll()
+                .then(noteRepository.deleteAll())
+                .then(attachmentRepository.deleteAll())
+                .then(userRepository.deleteAll())
+                .block(RESPONSE_TIMEOUT);
+        var user = userRepository.save(new User()
+                        .setLogin("attachments")
+                        .setPasswordHash("hash")
+                        .setEmail(EMAIL)
+                        .setRole(User.USER_ROLE))
+                .block(RESPONSE_TIMEOUT);
+        noteId = noteRepository.save(new Note().setName("note").setUserId(user.getId()))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+        // The in-memory connector hands the request body straight to the handler, so demand from the
+        // upload pipeline reaches the client body publisher and read-ahead can be counted.
+        webTestClient = WebTestClient.bindToApplicationContext(applicationContext)
+                .configureClient()
+                .responseTimeout(RESPONSE_TIMEOUT)
+                .defaultHeader(HttpHeaders.AUTHORIZATION,
+                        "Bearer " + tokenService.issueTokens(user).getAccessToken())
+                .build();
+    }
+
+    @Test
+    void addAttachmentsSkipsOtherPartsTest() {
+        var skippedBuffers = new ConcurrentLinkedQueue<NettyDataBuffer>();
+        var builder = new MultipartBodyBuilder();
+        builder.part("attachments", new byte[]{1, 2, 3}, MediaType.IMAGE_PNG).filename("first.png");
+        builder.part("comment", "not an attachment");
+        builder.asyncPart("other", createContent(4, skippedBuffers, new AtomicInteger()), DataBuffer.class)
+                .filename("other.png");
+        builder.part("attachments", new byte[]{4, 5, 6}, MediaType.IMAGE_GIF).filename("second.gif");
+
+        var attachmentIds = uploadAttachments(builder)
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<List<Long>>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(attachmentIds);
+        assertEquals(2, attachmentIds.size());
+        assertArrayEquals(attachmentIds.toArray(Long[]::new),
+                noteRepository.findDetailsById(noteId).block(RESPONSE_TIMEOUT).getAttachmentIds());
+        assertAllReleased(skippedBuffers);
+    }
+
+    @Test
+    void addAttachmentsRejectsTooManyFilesTest() {
+        var builder = new MultipartBodyBuilder();
+        for (int i = 0; i < 3; i++) {
+            builder.part("attachments", new byte[]{(byte) i}, MediaType.IMAGE_PNG)
+                    .filename("image%d.png".formatted(i));
+        }
+
+        uploadAttachments(builder)
+                .expectStatus().isBadRequest()
+                .expectBody(ErrorResponse.class)
+                .value(error -> assertEquals(
+                        "Количество файлов превышает заданный лимит в количестве 2 файлов", error.getMessage()));
+
+        assertNull(noteRepository.findDetailsById(noteId).block(RESPONSE_TIMEOUT).getAttachmentIds());
+    }
+
+    @Test
+    void addAttachmentsStopsReadingOversizedFileTest() {
+        var emittedChunks = new AtomicInteger();
+        var builder = new MultipartBodyBuilder();
+        builder.asyncPart("attachments", createContent(CHUNK_COUNT, new ConcurrentLinkedQueue<>(), emittedChunks),
+                        DataBuffer.class)
+                .filename("large.png");
+
+        uploadAttachments(builder)
+                .expectStatus().isBadRequest()
+                .expectBody(ErrorResponse.class)
+                .value(error -> assertTrue(
+                        error.getMessage().startsWith("Размер файла превышает максимальное число Мбайт: 1")));
+
+        assertTrue(emittedChunks.get() < CHUNK_COUNT);
+        assertNull(noteRepository.findDetailsById(noteId).block(RESPONSE_TIMEOUT).getAttachmentIds());
+    }
+
+    @Test
+    void addAttachmentsRejectsInvalidExtensionTest() {
+        var emittedBuffers = new ConcurrentLinkedQueue<NettyDataBuffer>();
+        var emittedChunks = new AtomicInteger();
+        var builder = new MultipartBodyBuilder();
+        builder.asyncPart("attachments", createContent(CHUNK_COUNT, emittedBuffers, emittedChunks), DataBuffer.class)
+                .filename("video.mp4");
+
+        uploadAttachments(builder)
+                .expectStatus().isBadRequest()
+                .expectBody(ErrorResponse.class)
+                .value(error -> assertEquals("Формат вложения mp4 не поддерживается", error.getMessage()));
+
+        assertTrue(emittedChunks.get() < CHUNK_COUNT);
+        assertAllReleased(emittedBuffers);
+        assertNull(noteRepository.findDetailsById(noteId).block(RESPONSE_TIMEOUT).getAttachmentIds());
+    }
+
+    private WebTestClient.ResponseSpec uploadAttachments(MultipartBodyBuilder builder) {
+        return webTestClient.post()
+                .uri("/api/v1/notes/{id}/attachment", noteId)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange();
+    }
+
+    private static Flux<DataBuffer> createContent(
+            int chunkCount,
+            ConcurrentLinkedQueue<NettyDataBuffer> emittedBuffers,
+            AtomicInteger emittedChunks) {
+
+        return Flux.range(0, chunkCount)
+                .map(i -> {
+                    var buffer = BUFFER_FACTORY.allocateBuffer(CHUNK_SIZE);
+                    buffer.write(new byte[CHUNK_SIZE]);
+                    emittedBuffers.add(buffer);
+                    emittedChunks.incrementAndGet();
+                    return buffer;
+                });
+    }
+
+    private static void assertAllReleased(ConcurrentLinkedQueue<NettyDataBuffer> buffers) {
+        assertFalse(buffers.isEmpty());
+        buffers.forEach(buffer -> assertEquals(0, buffer.getNativeBuffer().refCnt()));
+    }
+
+}
@@ -0,0 +1,113 @@
+package ru.vsu.csf.mynotes.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.NoteOwnershipCache;
+import ru.vsu.csf.mynotes.dictionary.CacheInvalidationType;
+import ru.vsu.csf.mynotes.model.dto.CacheInvalidationEvent;
+import ru.vsu.csf.mynotes.service.CacheInvalidationService;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "ru.vsu.csf.my-note.notifications.enabled=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class PostgresNotificationListenerTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration RETRY_DELAY = Duration.ofMillis(200);
+    private static final String EMAIL = "user@mail.ru";
+    private static final Long USER_ID = 1L;
+    private static final Long NOTE_ID = 1L;
+    private static final String TEST_CHANNEL = "test_notifications";
+
+    @Autowired
+    private NotificationPublisher notificationPublisher;
+
+    @Autowired
+    private NoteOwnershipCache noteOwnershipCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private RecordingNotificationHandler recordingNotificationHandler;
+
+    @Test
+    void notificationFromApplicationDatabaseClientIsReceivedTest() {
+        var received = databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", TEST_CHANNEL)
+                .bind("payload", "payload")
+                .then()
+                .then(Mono.delay(RETRY_DELAY))
+                .then(Mono.fromSupplier(recordingNotificationHandler.payloads::peek))
+                .repeatWhenEmpty(repeats -> repeats)
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals("payload", received);
+    }
+
+    @Test
+    void userChangedEventFromOtherInstanceEvictsOwnershipTest() throws Exception {
+        noteOwnershipCache.allow(EMAIL, NOTE_ID);
+        var payload = objectMapper.writeValueAsString(new CacheInvalidationEvent(
+                CacheInvalidationType.USER_CHANGED, null, USER_ID, EMAIL, "other-instance",
+                System.currentTimeMillis()));
+
+        var evicted = notificationPublisher.notify(CacheInvalidationService.CHANNEL, payload)
+                .then(Mono.delay(RETRY_DELAY))
+                .then(Mono.fromSupplier(() -> noteOwnershipCache.isAllowed(EMAIL, NOTE_ID)))
+                .filter(allowed -> !allowed)
+                .repeatWhenEmpty(repeats -> repeats)
+                .block(RESPONSE_TIMEOUT);
+
+        assertFalse(evicted);
+    }
+
+    @TestConfiguration
+    static class NotificationTestConfig {
+
+        @Bean
+        RecordingNotificationHandler recordingNotificationHandler() {
+            return new RecordingNotificationHandler();
+        }
+
+    }
+
+    static class RecordingNotificationHandler implements NotificationHandler {
+
+        private final Queue<String> payloads = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public String getChannel() {
+            return TEST_CHANNEL;
+        }
+
+        @Override
+        public void handle(String payload) {
+            payloads.add(payload);
+        }
+
+        @Override
+        public void onReconnect() {
+        }
+
+    }
+
+}
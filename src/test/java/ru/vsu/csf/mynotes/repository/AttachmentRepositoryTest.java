@@ -0,0 +1,178 @@
+package ru.vsu.csf.mynotes.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.vsu.csf.mynotes.dictionary.FileExtension;
+import ru.vsu.csf.mynotes.model.entity.Attachment;
+import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.entity.NoteAttachments;
+import ru.vsu.csf.mynotes.model.entity.User;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AttachmentRepositoryTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(1_000_000);
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private NoteAttachmentsRepository noteAttachmentsRepository;
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    @AfterEach
+    void setUp() {
+        noteAttachmentsRepository.deleteAll()
+                .then(noteRepository.deleteAll())
+                .then(attachmentRepository.deleteAll())
+                .then(userRepository.deleteAll())
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void deleteUnlinkedByIdsKeepsLinkedAttachmentsTest() {
+        var linkedId = createAttachment("linked", FileExtension.PNG);
+        var unlinkedId = createAttachment("unlinked", FileExtension.PNG);
+        var untouchedId = createAttachment("untouched", FileExtension.PNG);
+        linkToNote(linkedId);
+
+        var blobKeys = attachmentRepository.deleteUnlinkedByIds(new Long[]{linkedId, unlinkedId})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of("unlinked"), blobKeys);
+        assertTrue(attachmentRepository.existsById(linkedId).block(RESPONSE_TIMEOUT));
+        assertFalse(attachmentRepository.existsById(unlinkedId).block(RESPONSE_TIMEOUT));
+        assertTrue(attachmentRepository.existsById(untouchedId).block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void deleteUnlinkedByIdsReturnsSharedBlobKeyOnceTest() {
+        var pngId = createAttachment("shared", FileExtension.PNG);
+        var gifId = createAttachment("shared", FileExtension.GIF);
+        var legacyId = createAttachment(null, FileExtension.JPG);
+
+        var blobKeys = attachmentRepository.deleteUnlinkedByIds(new Long[]{pngId, gifId, legacyId})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of("shared"), blobKeys);
+        assertEquals(0, attachmentRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void upsertAllInsertsNewAttachmentsTest() {
+        var attachments = attachmentRepository.upsertAll(
+                        new String[]{"first", "second"},
+                        new Long[]{3L, 5L},
+                        new String[]{FileExtension.PNG.name(), FileExtension.GIF.name()})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertNotNull(attachments);
+        assertEquals(2, attachments.size());
+        attachments.sort(Comparator.comparing(Attachment::getBlobKey));
+        assertEquals(new Attachment(attachments.get(0).getId(), "first", 3L, FileExtension.PNG), attachments.get(0));
+        assertEquals(new Attachment(attachments.get(1).getId(), "second", 5L, FileExtension.GIF), attachments.get(1));
+        assertEquals(2, attachmentRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void upsertAllReturnsExistingAttachmentForSameContentTest() {
+        var existingId = createAttachment("first", FileExtension.PNG);
+
+        var attachments = attachmentRepository.upsertAll(
+                        new String[]{"first", "first"},
+                        new Long[]{3L, 3L},
+                        new String[]{FileExtension.PNG.name(), FileExtension.GIF.name()})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertNotNull(attachments);
+        assertEquals(2, attachments.size());
+        var png = attachments.stream()
+                .filter(attachment -> attachment.getExtension() == FileExtension.PNG)
+                .findFirst()
+                .orElseThrow();
+        var gif = attachments.stream()
+                .filter(attachment -> attachment.getExtension() == FileExtension.GIF)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(existingId, png.getId());
+        assertNotEquals(existingId, gif.getId());
+        assertEquals(2, attachmentRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void mergeIntoExistingDropsLinkAlreadyPointingAtTargetTest() {
+        var targetId = createAttachment("target", FileExtension.PNG);
+        var legacyId = createAttachment(null, FileExtension.PNG);
+        var noteId = linkToNote(legacyId);
+        noteAttachmentsRepository.save(new NoteAttachments().setNoteId(noteId).setAttachmentId(targetId))
+                .block(RESPONSE_TIMEOUT);
+        var otherNoteId = createNote(findUserId(noteId));
+        noteAttachmentsRepository.save(new NoteAttachments().setNoteId(otherNoteId).setAttachmentId(legacyId))
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(1, attachmentRepository.mergeIntoExisting(legacyId, "target").block(RESPONSE_TIMEOUT));
+
+        assertFalse(attachmentRepository.existsById(legacyId).block(RESPONSE_TIMEOUT));
+        assertNotNull(noteAttachmentsRepository.findByNoteIdAndAttachmentId(noteId, targetId)
+                .block(RESPONSE_TIMEOUT));
+        assertNotNull(noteAttachmentsRepository.findByNoteIdAndAttachmentId(otherNoteId, targetId)
+                .block(RESPONSE_TIMEOUT));
+        assertEquals(2, noteAttachmentsRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    private Long createAttachment(String blobKey, FileExtension extension) {
+        return attachmentRepository.save(new Attachment()
+                        .setBlobKey(blobKey)
+                        .setSize(3L)
+                        .setExtension(extension))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+    }
+
+    private Long linkToNote(Long attachmentId) {
+        var user = userRepository.save(new User()
+                        .setLogin("attachments")
+                        .setPasswordHash("hash")
+                        .setEmail("attachments@mail.ru")
+                        .setRole(User.USER_ROLE))
+                .block(RESPONSE_TIMEOUT);
+        var noteId = createNote(user.getId());
+        noteAttachmentsRepository.save(new NoteAttachments().setNoteId(noteId).setAttachmentId(attachmentId))
+                .block(RESPONSE_TIMEOUT);
+        return noteId;
+    }
+
+    private Long createNote(Long userId) {
+        return noteRepository.save(new Note().setName("note").setUserId(userId))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+    }
+
+    private Long findUserId(Long noteId) {
+        return noteRepository.findById(noteId)
+                .block(RESPONSE_TIMEOUT)
+                .getUserId();
+    }
+
+}
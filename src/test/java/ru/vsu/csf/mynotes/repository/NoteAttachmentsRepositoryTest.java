@@ -6,8 +6,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.vsu.csf.mynotes.dictionary.FileExtension;
 import ru.vsu.csf.mynotes.model.entity.Attachment;
 import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.entity.NoteAttachments;
+import ru.vsu.csf.mynotes.model.entity.User;
 
 import java.time.Duration;
 import java.util.List;
@@ -29,27 +32,95 @@ class NoteAttachmentsRepositoryTest {
     @Autowired
     private AttachmentRepository attachmentRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
     @BeforeEach
     @AfterEach
     void setUp() {
         noteAttachmentsRepository.deleteAll()
                 .then(noteRepository.deleteAll())
                 .then(attachmentRepository.deleteAll())
+                .then(userRepository.deleteAll())
                 .block(RESPONSE_TIMEOUT);
     }
 
     @Test
-    void deleteByNoteIdAndAttachmentIdSuccess() {
-        noteRepository.save(new Note())
-                .then(attachmentRepository.save(new Attachment()));
+    void deleteAllByNoteIdDeletesOnlyRequestedLinksTest() {
+        var userId = createUser();
+        var noteId = createNote(userId);
+        var otherNoteId = createNote(userId);
+        var firstId = createAttachment("first");
+        var secondId = createAttachment("second");
+        noteAttachmentsRepository.insertAll(noteId, new Long[]{firstId, secondId})
+                .thenMany(noteAttachmentsRepository.insertAll(otherNoteId, new Long[]{firstId}))
+                .blockLast(RESPONSE_TIMEOUT);
+
+        var deleted = noteAttachmentsRepository.deleteAllByNoteId(noteId, new Long[]{firstId})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(firstId), deleted);
+        assertNull(noteAttachmentsRepository.findByNoteIdAndAttachmentId(noteId, firstId).block(RESPONSE_TIMEOUT));
+        assertNotNull(noteAttachmentsRepository.findByNoteIdAndAttachmentId(noteId, secondId).block(RESPONSE_TIMEOUT));
+        assertNotNull(noteAttachmentsRepository.findByNoteIdAndAttachmentId(otherNoteId, firstId).block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void deleteAllByNoteIdSkipsNotLinkedAttachmentsTest() {
+        var userId = createUser();
+        var noteId = createNote(userId);
+        var otherNoteId = createNote(userId);
+        var attachmentId = createAttachment("first");
+        noteAttachmentsRepository.save(new NoteAttachments().setNoteId(otherNoteId).setAttachmentId(attachmentId))
+                .block(RESPONSE_TIMEOUT);
+
+        var deleted = noteAttachmentsRepository.deleteAllByNoteId(noteId, new Long[]{attachmentId, attachmentId + 1})
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
 
-        assertDoesNotThrow(() -> noteAttachmentsRepository.deleteByNoteIdAndAttachmentIdIn(1L, List.of(1L))
-                .block(RESPONSE_TIMEOUT));
+        assertTrue(deleted.isEmpty());
+        assertEquals(1, noteAttachmentsRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void insertAllSkipsAlreadyLinkedAttachmentsTest() {
+        var noteId = createNote(createUser());
+        var firstId = createAttachment("first");
+        var secondId = createAttachment("second");
+        noteAttachmentsRepository.insertAll(noteId, new Long[]{firstId}).blockLast(RESPONSE_TIMEOUT);
 
-        assertTrue(noteAttachmentsRepository.findAll()
+        var inserted = noteAttachmentsRepository.insertAll(noteId, new Long[]{firstId, secondId, secondId})
                 .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(secondId), inserted);
+        assertEquals(2, noteAttachmentsRepository.count().block(RESPONSE_TIMEOUT));
+    }
+
+    private Long createUser() {
+        return userRepository.save(new User()
+                        .setLogin("attachments")
+                        .setPasswordHash("hash")
+                        .setEmail("attachments@mail.ru")
+                        .setRole(User.USER_ROLE))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+    }
+
+    private Long createNote(Long userId) {
+        return noteRepository.save(new Note().setName("note").setUserId(userId))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+    }
+
+    private Long createAttachment(String blobKey) {
+        return attachmentRepository.save(new Attachment()
+                        .setBlobKey(blobKey)
+                        .setSize(3L)
+                        .setExtension(FileExtension.PNG))
                 .block(RESPONSE_TIMEOUT)
-                .isEmpty());
+                .getId();
     }
 
-}
\ No newline at end of file
+}
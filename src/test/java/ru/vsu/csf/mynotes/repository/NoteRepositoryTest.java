@@ -0,0 +1,315 @@
+package ru.vsu.csf.mynotes.repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
+import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.entity.User;
+import ru.vsu.csf.mynotes.model.projection.NoteChange;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchHit;
+import ru.vsu.csf.mynotes.model.projection.PatchedNoteText;
+import ru.vsu.csf.mynotes.util.HashUtils;
+import ru.vsu.csf.mynotes.util.PlainTextUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class NoteRepositoryTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(1_000_000);
+
+    @Autowired
+    private NoteRepository noteRepository;
+
+    @Autowired
+    private NoteAttachmentsRepository noteAttachmentsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    private Long userId;
+
+    @BeforeEach
+    @AfterEach
+    void setUp() {
+        noteAttachmentsRepository.deleteAll()
+                .then(noteRepository.deleteAll())
+                .then(userRepository.deleteAll())
+                .block(RESPONSE_TIMEOUT);
+        userId = createUser("notes@mail.ru");
+    }
+
+    @Test
+    void touchBumpsChangeSeqPerUserTest() {
+        var otherUserId = createUser("other@mail.ru");
+        var first = createNote("first".getBytes(StandardCharsets.UTF_8));
+        var second = createNote("second".getBytes(StandardCharsets.UTF_8));
+        var other = createNote(otherUserId, "other".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(1L, noteRepository.touch(first.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT));
+        assertEquals(2L, noteRepository.touch(second.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT));
+        assertEquals(1L, noteRepository.touch(other.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT));
+        assertEquals(3L, noteRepository.touch(first.getId(), NoteChangeType.ATTACHMENTS_CHANGED)
+                .block(RESPONSE_TIMEOUT));
+        noteRepository.updateName(second.getId(), "renamed", second.getVersion()).block(RESPONSE_TIMEOUT);
+
+        assertEquals(4L, findUserChangeSeq(userId));
+        assertEquals(1L, findUserChangeSeq(otherUserId));
+        assertEquals(List.of(3L, 4L), findChangeSeqs(userId));
+        assertEquals(List.of(1L), findChangeSeqs(otherUserId));
+    }
+
+    @Test
+    void touchReturnsEmptyForMissingNoteTest() {
+        assertNull(noteRepository.touch(Long.MAX_VALUE, NoteChangeType.CREATED).block(RESPONSE_TIMEOUT));
+        assertEquals(0L, findUserChangeSeq(userId));
+    }
+
+    @Test
+    void findChangesByUserIdAfterPagesByChangeSeqTest() {
+        var otherUserId = createUser("other@mail.ru");
+        var noteIds = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            var note = createNote("text".getBytes(StandardCharsets.UTF_8));
+            noteIds.add(note.getId());
+            noteRepository.touch(note.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT);
+        }
+        var other = createNote(otherUserId, "other".getBytes(StandardCharsets.UTF_8));
+        noteRepository.touch(other.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT);
+        noteRepository.touch(noteIds.get(0), NoteChangeType.RENAMED).block(RESPONSE_TIMEOUT);
+
+        var firstPage = noteRepository.findChangesByUserIdAfter(userId, 0, 2).collectList().block(RESPONSE_TIMEOUT);
+        var secondPage = noteRepository.findChangesByUserIdAfter(userId, 3, 2).collectList().block(RESPONSE_TIMEOUT);
+        var lastPage = noteRepository.findChangesByUserIdAfter(userId, 5, 2).collectList().block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(noteIds.get(1), noteIds.get(2)), firstPage.stream().map(NoteChange::getId).toList());
+        assertEquals(List.of(2L, 3L), firstPage.stream().map(NoteChange::getChangeSeq).toList());
+        assertEquals(List.of(noteIds.get(3), noteIds.get(4)), secondPage.stream().map(NoteChange::getId).toList());
+        assertEquals(List.of(4L, 5L), secondPage.stream().map(NoteChange::getChangeSeq).toList());
+        assertEquals(List.of(noteIds.get(0)), lastPage.stream().map(NoteChange::getId).toList());
+        assertEquals(List.of(6L), lastPage.stream().map(NoteChange::getChangeSeq).toList());
+        assertTrue(noteRepository.findChangesByUserIdAfter(userId, 6, 2).collectList().block(RESPONSE_TIMEOUT)
+                .isEmpty());
+    }
+
+    @Test
+    void schemaBackfillNumbersUnsequencedNotesPerUserTest() {
+        var otherUserId = createUser("other@mail.ru");
+        var touched = createNote("touched".getBytes(StandardCharsets.UTF_8));
+        noteRepository.touch(touched.getId(), NoteChangeType.CREATED).block(RESPONSE_TIMEOUT);
+        var first = createNote("first".getBytes(StandardCharsets.UTF_8));
+        var second = createNote("second".getBytes(StandardCharsets.UTF_8));
+        var other = createNote(otherUserId, "other".getBytes(StandardCharsets.UTF_8));
+
+        applyMainSchema();
+
+        assertEquals(3L, findUserChangeSeq(userId));
+        assertEquals(1L, findUserChangeSeq(otherUserId));
+        assertEquals(List.of(touched.getId(), first.getId(), second.getId()),
+                noteRepository.findChangesByUserIdAfter(userId, 0, 10)
+                        .map(NoteChange::getId)
+                        .collectList()
+                        .block(RESPONSE_TIMEOUT));
+        assertEquals(List.of(1L, 2L, 3L), findChangeSeqs(userId));
+        assertEquals(List.of(other.getId()), noteRepository.findChangesByUserIdAfter(otherUserId, 0, 10)
+                .map(NoteChange::getId)
+                .collectList()
+                .block(RESPONSE_TIMEOUT));
+
+        applyMainSchema();
+
+        assertEquals(3L, findUserChangeSeq(userId));
+        assertEquals(List.of(1L, 2L, 3L), findChangeSeqs(userId));
+        assertEquals(4L, noteRepository.touch(first.getId(), NoteChangeType.RENAMED).block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void patchTextAppliesSeveralOperationsTest() {
+        var note = createNote("<p>Привет, мир</p>".getBytes(StandardCharsets.UTF_8));
+        var expected = "<h1>Hello, мир &amp; всем</h1>".getBytes(StandardCharsets.UTF_8);
+
+        var patched = patchText(note, new int[]{1, 3, 17, 25}, new int[]{1, 12, 6, 1},
+                new String[]{"h1", "Hello", "мир &amp; всем", "h1"})
+                .block(RESPONSE_TIMEOUT);
+
+        assertNotNull(patched);
+        assertEquals(userId, patched.getUserId());
+        assertEquals(HashUtils.sha256Hex(expected), patched.getTextHash());
+        assertEquals(note.getVersion() + 1, patched.getVersion());
+        assertEquals(PlainTextUtils.fromHtml(expected), patched.getPlainText());
+        assertArrayEquals(expected, noteRepository.findById(note.getId()).block(RESPONSE_TIMEOUT).getText());
+    }
+
+    @Test
+    void patchTextKeepsPlainTextInSyncWithHtmlConversionTest() {
+        var note = createNote("<p>a</p>".getBytes(StandardCharsets.UTF_8));
+        var expected = "<p>&lt;b&gt; &quot;x&quot; &#39;y&#39;&nbsp;&amp;amp;</p>".getBytes(StandardCharsets.UTF_8);
+
+        var patched = patchText(note, new int[]{3}, new int[]{1},
+                new String[]{"&lt;b&gt; &quot;x&quot; &#39;y&#39;&nbsp;&amp;amp;"})
+                .block(RESPONSE_TIMEOUT);
+
+        assertNotNull(patched);
+        assertEquals(PlainTextUtils.fromHtml(expected), patched.getPlainText());
+    }
+
+    @Test
+    void patchTextSkipsPositionInsideCharacterTest() {
+        var text = "Привет".getBytes(StandardCharsets.UTF_8);
+        var note = createNote(text);
+
+        var patched = patchText(note, new int[]{1}, new int[]{2}, new String[]{"а"})
+                .block(RESPONSE_TIMEOUT);
+
+        assertNull(patched);
+        var stored = noteRepository.findById(note.getId()).block(RESPONSE_TIMEOUT);
+        assertArrayEquals(text, stored.getText());
+        assertEquals(note.getVersion(), stored.getVersion());
+    }
+
+    @Test
+    void patchTextSkipsStaleVersionTest() {
+        var note = createNote("text".getBytes(StandardCharsets.UTF_8));
+
+        var patched = noteRepository.patchText(note.getId(), note.getVersion() + 1, new Integer[]{0},
+                        new Integer[]{0}, new Integer[]{1}, "a".getBytes(StandardCharsets.UTF_8), 0)
+                .block(RESPONSE_TIMEOUT);
+
+        assertNull(patched);
+    }
+
+    @Test
+    void patchTextFailsOnInvalidEncodingTest() {
+        var note = createNote(new byte[]{'a', (byte) 0xFF, 'b'});
+
+        var exception = assertThrows(RuntimeException.class,
+                () -> patchText(note, new int[]{0}, new int[]{1}, new String[]{"c"}).block(RESPONSE_TIMEOUT));
+
+        var cause = NestedExceptionUtils.getMostSpecificCause(exception);
+        assertInstanceOf(R2dbcException.class, cause);
+        assertEquals("22021", ((R2dbcException) cause).getSqlState());
+        var stored = noteRepository.findById(note.getId()).block(RESPONSE_TIMEOUT);
+        assertEquals(note.getVersion(), stored.getVersion());
+    }
+
+    @Test
+    void searchByUserIdMatchesTextAfterRenameTest() {
+        var note = createNote("<p>old</p>".getBytes(StandardCharsets.UTF_8));
+        var text = "<p>Рыжая кошка</p>".getBytes(StandardCharsets.UTF_8);
+        var updated = noteRepository.updateText(note.getId(), text, null, HashUtils.sha256Hex(text),
+                        PlainTextUtils.fromHtml(text), note.getVersion())
+                .block(RESPONSE_TIMEOUT);
+        noteRepository.updateName(note.getId(), "Собака", updated.getVersion()).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(note.getId()), findSearchHitIds("кошки"));
+        assertEquals(List.of(note.getId()), findSearchHitIds("собаки"));
+        assertTrue(findSearchHitIds("old").isEmpty());
+    }
+
+    @Test
+    void searchByUserIdMatchesPatchedTextTest() {
+        var note = createNote("<p>Привет, мир</p>".getBytes(StandardCharsets.UTF_8));
+
+        patchText(note, new int[]{17}, new int[]{6}, new String[]{"кошка"}).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(note.getId()), findSearchHitIds("кошки"));
+        assertTrue(findSearchHitIds("мир").isEmpty());
+    }
+
+    private Long createUser(String email) {
+        return userRepository.save(new User()
+                        .setLogin("notes")
+                        .setPasswordHash("hash")
+                        .setEmail(email)
+                        .setRole(User.USER_ROLE))
+                .block(RESPONSE_TIMEOUT)
+                .getId();
+    }
+
+    private Note createNote(byte[] text) {
+        return createNote(userId, text);
+    }
+
+    private Note createNote(Long userId, byte[] text) {
+        return noteRepository.save(new Note()
+                        .setName("note")
+                        .setText(text)
+                        .setTextHash(HashUtils.sha256Hex(text))
+                        .setUserId(userId))
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    private Long findUserChangeSeq(Long userId) {
+        return databaseClient.sql("SELECT change_seq FROM user_info WHERE id = :id")
+                .bind("id", userId)
+                .map(row -> row.get("change_seq", Long.class))
+                .one()
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    private List<Long> findChangeSeqs(Long userId) {
+        return noteRepository.findChangesByUserIdAfter(userId, 0, 100)
+                .map(NoteChange::getChangeSeq)
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    private List<Long> findSearchHitIds(String query) {
+        return noteRepository.searchByUserId(userId, query, 10)
+                .map(NoteSearchHit::getId)
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    private void applyMainSchema() {
+        // The test classpath shadows schema.sql, so the production migration is read from the sources.
+        new ResourceDatabasePopulator(new FileSystemResource("src/main/resources/schema.sql"))
+                .populate(connectionFactory)
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    private Mono<PatchedNoteText> patchText(Note note, int[] positions, int[] lengths, String[] inserts) {
+        var data = new ByteArrayOutputStream();
+        var dataLengths = new Integer[inserts.length];
+        for (int i = 0; i < inserts.length; i++) {
+            var insert = inserts[i].getBytes(StandardCharsets.UTF_8);
+            dataLengths[i] = insert.length;
+            data.writeBytes(insert);
+        }
+        var last = positions.length - 1;
+        return noteRepository.patchText(
+                note.getId(),
+                note.getVersion(),
+                Arrays.stream(positions).boxed().toArray(Integer[]::new),
+                Arrays.stream(lengths).boxed().toArray(Integer[]::new),
+                dataLengths,
+                data.toByteArray(),
+                positions[last] + lengths[last]);
+    }
+
+}
@@ -0,0 +1,131 @@
+package ru.vsu.csf.mynotes.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import ru.vsu.csf.mynotes.configuration.property.InMemorySearchProperties;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchDocument;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class NoteSearchIndexTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final Long USER_ID = 1L;
+    private static final Long OTHER_USER_ID = 2L;
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    private NoteSearchIndex noteSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        noteSearchIndex = new NoteSearchIndex(noteRepository, createInMemorySearchProperties());
+    }
+
+    @Test
+    void searchMatchesWordPrefixesInNameAndTextTest() {
+        when(noteRepository.findSearchDocumentsByUserId(USER_ID)).thenReturn(Flux.just(
+                new NoteSearchDocument(1L, "Покупки", false, 0L, "молоко, хлеб"),
+                new NoteSearchDocument(2L, "Молодежь", false, 0L, null),
+                new NoteSearchDocument(3L, "Работа", true, 0L, "отчет к понедельнику")));
+
+        assertEquals(List.of(2L, 1L), search("мол"));
+        assertEquals(List.of(1L), search("мол хле"));
+        assertEquals(List.of(), search("отпуск"));
+        verify(noteRepository, times(1)).findSearchDocumentsByUserId(USER_ID);
+    }
+
+    @Test
+    void searchReflectsIncrementalUpdatesTest() {
+        when(noteRepository.findSearchDocumentsByUserId(USER_ID)).thenReturn(Flux.just(
+                new NoteSearchDocument(1L, "Покупки", false, 0L, "молоко, хлеб")));
+        search("покупки");
+
+        noteSearchIndex.onNameChanged(USER_ID, 1L, "Список", 1L);
+        noteSearchIndex.onTextChanged(USER_ID, 1L, "сыр", 2L);
+        noteSearchIndex.onNoteCreated(USER_ID, 5L, "Сыры", 0L);
+        noteSearchIndex.onAttachedChanged(USER_ID, 5L, true, 1L);
+
+        assertEquals(List.of(), search("покупки"));
+        assertEquals(List.of(), search("молоко"));
+        assertEquals(List.of(5L, 1L), search("сыр"));
+        var created = noteSearchIndex.search(USER_ID, "сыры", 10).block(RESPONSE_TIMEOUT).get(0);
+        assertEquals(true, created.isAttached());
+        assertEquals(1L, created.getVersion());
+        verify(noteRepository, times(1)).findSearchDocumentsByUserId(USER_ID);
+    }
+
+    @Test
+    void changesOfOtherUsersNotesDoNotTouchIndexTest() {
+        when(noteRepository.findSearchDocumentsByUserId(USER_ID)).thenReturn(Flux.just(
+                new NoteSearchDocument(1L, "Покупки", false, 0L, null)));
+        search("покупки");
+
+        noteSearchIndex.onNameChanged(OTHER_USER_ID, 1L, "Список", 1L);
+        noteSearchIndex.evictNote(OTHER_USER_ID, 2L);
+
+        assertEquals(List.of(1L), search("покупки"));
+        verify(noteRepository, times(1)).findSearchDocumentsByUserId(USER_ID);
+    }
+
+    @Test
+    void searchDoesNotCacheIndexChangedWhileBuildingTest() {
+        when(noteRepository.findSearchDocumentsByUserId(USER_ID)).thenReturn(Flux.defer(() -> {
+            noteSearchIndex.onNameChanged(USER_ID, 1L, "Список", 1L);
+            return Flux.just(new NoteSearchDocument(1L, "Покупки", false, 0L, null));
+        }));
+
+        search("покупки");
+        search("покупки");
+
+        verify(noteRepository, times(2)).findSearchDocumentsByUserId(USER_ID);
+    }
+
+    @Test
+    void evictAllDropsIndexesAndIndexesBeingBuiltTest() {
+        when(noteRepository.findSearchDocumentsByUserId(USER_ID)).thenReturn(Flux.defer(() -> {
+            noteSearchIndex.evictAll();
+            return Flux.just(new NoteSearchDocument(1L, "Покупки", false, 0L, null));
+        })).thenReturn(Flux.just(new NoteSearchDocument(1L, "Покупки", false, 0L, null)));
+
+        search("покупки");
+        search("покупки");
+        search("покупки");
+        noteSearchIndex.evictUser(USER_ID);
+        search("покупки");
+
+        verify(noteRepository, times(3)).findSearchDocumentsByUserId(USER_ID);
+    }
+
+    private List<Long> search(String query) {
+        return noteSearchIndex.search(USER_ID, query, 10)
+                .block(RESPONSE_TIMEOUT)
+                .stream()
+                .map(NoteSummary::getId)
+                .toList();
+    }
+
+    private static InMemorySearchProperties createInMemorySearchProperties() {
+        var properties = new InMemorySearchProperties();
+        properties.setEnabled(true);
+        properties.setMemoryBudget(DataSize.ofMegabytes(1));
+        properties.setTtl(Duration.ofMinutes(1));
+        return properties;
+    }
+
+}
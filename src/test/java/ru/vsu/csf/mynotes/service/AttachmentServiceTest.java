@@ -4,11 +4,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
@@ -17,13 +23,21 @@ import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.NotFoundException;
 import ru.vsu.csf.mynotes.model.entity.Attachment;
 import ru.vsu.csf.mynotes.repository.AttachmentRepository;
-import ru.vsu.csf.mynotes.util.FilePartUtils;
+import ru.vsu.csf.mynotes.storage.BlobStore;
+import ru.vsu.csf.mynotes.storage.StoredBlob;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -33,6 +47,9 @@ class AttachmentServiceTest {
     private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
     private static final Integer MAX_FILE_AMOUNT = 2;
     private static final Integer MAX_FILE_SIZE_MB = 12;
+    private static final Integer UPLOAD_BUFFER_WINDOW = 4;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final String BLOB_KEY = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
 
     @InjectMocks
     private AttachmentService attachmentService;
@@ -41,46 +58,65 @@ class AttachmentServiceTest {
     private ApplicationProperties applicationProperties;
 
     @Mock
-    private FilePart filePart;
+    private AttachmentRepository attachmentRepository;
 
     @Mock
-    private DataBuffer dataBuffer;
-
-    @Mock
-    private AttachmentRepository attachmentRepository;
+    private BlobStore blobStore;
 
     @Test
-    void saveAttachmentsSuccessTest() {
+    void storeAttachmentsSuccessTest() {
         when(applicationProperties.getMaxFileAmount()).thenReturn(MAX_FILE_AMOUNT);
         when(applicationProperties.getMaxFileSizeMb()).thenReturn(MAX_FILE_SIZE_MB);
+        when(applicationProperties.getUploadBufferWindow()).thenReturn(UPLOAD_BUFFER_WINDOW);
 
-        when(filePart.filename()).thenReturn("image.png");
-        when(filePart.content()).thenReturn(Flux.just(dataBuffer));
-        when(dataBuffer.capacity()).thenReturn(10*1024*1024);
+        when(blobStore.store(any())).thenAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(0)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.just(new StoredBlob(BLOB_KEY, 5))));
 
-        final var dataBufferBytes = "bytes".getBytes();
-        try (MockedStatic<FilePartUtils> utilities = Mockito.mockStatic(FilePartUtils.class)) {
-            utilities.when(() -> FilePartUtils.getByteArray(filePart))
-                    .thenReturn(Mono.just(dataBufferBytes));
-            when(attachmentRepository.save(new Attachment()
-                    .setFile(dataBufferBytes)
-                    .setExtension(FileExtension.PNG)))
-                    .thenReturn(Mono.empty());
+        var attachments = attachmentService.storeAttachments(createFilePart("image.png", Flux.just(new byte[5])))
+                .block(RESPONSE_TIMEOUT);
 
-            assertDoesNotThrow(() -> attachmentService.saveAttachments(List.of(filePart))
-                    .collectList()
-                    .block(RESPONSE_TIMEOUT));
+        assertEquals(List.of(new Attachment()
+                .setBlobKey(BLOB_KEY)
+                .setSize(5L)
+                .setExtension(FileExtension.PNG)), attachments);
+        verify(attachmentRepository, never()).save(any());
+    }
 
-            verify(attachmentRepository, atMostOnce()).save(any());
-        }
+    @Test
+    void insertAttachmentsReusesRowsWithSameContentTest() {
+        final var otherKey = BLOB_KEY.replace('a', 'b');
+        when(attachmentRepository.upsertAll(
+                new String[]{BLOB_KEY, otherKey},
+                new Long[]{5L, 7L},
+                new String[]{"PNG", "MP3"}))
+                .thenReturn(Flux.just(
+                        new Attachment(2L, otherKey, 7L, FileExtension.MP3),
+                        new Attachment(1L, BLOB_KEY, 5L, FileExtension.PNG)));
+
+        var ids = attachmentService.insertAttachments(List.of(
+                        new Attachment().setBlobKey(BLOB_KEY).setSize(5L).setExtension(FileExtension.PNG),
+                        new Attachment().setBlobKey(otherKey).setSize(7L).setExtension(FileExtension.MP3),
+                        new Attachment().setBlobKey(BLOB_KEY).setSize(5L).setExtension(FileExtension.PNG)))
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(1L, 2L, 1L), ids);
     }
 
     @Test
     void saveAttachmentThrowsExceptionWhenTooMuchFilesTest() {
         when(applicationProperties.getMaxFileAmount()).thenReturn(MAX_FILE_AMOUNT);
+        when(applicationProperties.getMaxFileSizeMb()).thenReturn(MAX_FILE_SIZE_MB);
+        when(applicationProperties.getUploadBufferWindow()).thenReturn(UPLOAD_BUFFER_WINDOW);
+        when(blobStore.store(any())).thenAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(0)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.just(new StoredBlob(BLOB_KEY, 5))));
+
+        var parts = Flux.range(0, MAX_FILE_AMOUNT + 1)
+                .concatMap(i -> createFilePart("image.png", Flux.just(new byte[5])));
 
-        assertThatThrownBy(() -> attachmentService.saveAttachments(List.of(filePart, filePart, filePart))
-                    .collectList()
+        assertThatThrownBy(() -> attachmentService.storeAttachments(parts)
                     .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(BadRequestException.class)
                 .hasMessage("Количество файлов превышает заданный лимит в количестве 2 файлов");
@@ -91,10 +127,9 @@ class AttachmentServiceTest {
     @Test
     void saveAttachmentThrowsExceptionWhenFileDoesNotHaveExtensionTest() {
         when(applicationProperties.getMaxFileAmount()).thenReturn(MAX_FILE_AMOUNT);
-        when(filePart.filename()).thenReturn("image");
+        when(applicationProperties.getUploadBufferWindow()).thenReturn(UPLOAD_BUFFER_WINDOW);
 
-        assertThatThrownBy(() -> attachmentService.saveAttachments(List.of(filePart))
-                    .collectList()
+        assertThatThrownBy(() -> attachmentService.storeAttachments(createFilePart("image", Flux.just(new byte[5])))
                     .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(BadRequestException.class)
                 .hasMessage("Файл не имеет расширения");
@@ -105,10 +140,9 @@ class AttachmentServiceTest {
     @Test
     void saveAttachmentThrowsExceptionWhenFileHasInvalidExtensionTest() {
         when(applicationProperties.getMaxFileAmount()).thenReturn(MAX_FILE_AMOUNT);
-        when(filePart.filename()).thenReturn("image.mp4");
+        when(applicationProperties.getUploadBufferWindow()).thenReturn(UPLOAD_BUFFER_WINDOW);
 
-        assertThatThrownBy(() -> attachmentService.saveAttachments(List.of(filePart))
-                    .collectList()
+        assertThatThrownBy(() -> attachmentService.storeAttachments(createFilePart("image.mp4", Flux.just(new byte[5])))
                     .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(BadRequestException.class)
                 .hasMessage("Формат вложения mp4 не поддерживается");
@@ -120,39 +154,181 @@ class AttachmentServiceTest {
     void saveAttachmentThrowsExceptionWhenFileTooLargeTest() {
         when(applicationProperties.getMaxFileAmount()).thenReturn(MAX_FILE_AMOUNT);
         when(applicationProperties.getMaxFileSizeMb()).thenReturn(MAX_FILE_SIZE_MB);
-
-        when(filePart.filename()).thenReturn("image.mp3");
-        when(filePart.content()).thenReturn(Flux.just(dataBuffer));
-        when(dataBuffer.capacity()).thenReturn(30*1024*1024);
-
-        assertThatThrownBy(() -> attachmentService.saveAttachments(List.of(filePart))
-                    .collectList()
+        when(applicationProperties.getUploadBufferWindow()).thenReturn(UPLOAD_BUFFER_WINDOW);
+        when(blobStore.store(any())).thenAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(0)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.empty()));
+
+        final var chunkCount = 2 * MAX_FILE_SIZE_MB * 1024 * 1024 / CHUNK_SIZE;
+        final var emittedChunks = new AtomicInteger();
+        var content = Flux.range(0, chunkCount)
+                .map(i -> new byte[CHUNK_SIZE])
+                .doOnNext(chunk -> emittedChunks.incrementAndGet());
+
+        assertThatThrownBy(() -> attachmentService.storeAttachments(createFilePart("image.mp3", content))
                     .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(BadRequestException.class)
                 .hasMessageContaining("Размер файла превышает максимальное число Мбайт: ");
 
+        assertTrue(emittedChunks.get() < chunkCount);
         verify(attachmentRepository, never()).save(any());
     }
 
     @Test
     void deleteAttachmentsSuccessTest() {
-        when(attachmentRepository.findById(1L)).thenReturn(Mono.just(new Attachment()));
-        when(attachmentRepository.deleteById(1L)).thenReturn(Mono.empty());
+        when(attachmentRepository.deleteUnlinkedByIds(new Long[]{1L})).thenReturn(Flux.just(BLOB_KEY));
 
-        assertDoesNotThrow(() -> attachmentService.deleteAttachments(List.of(1L)).block(RESPONSE_TIMEOUT));
+        assertEquals(List.of(BLOB_KEY), attachmentService.deleteAttachments(List.of(1L))
+                .collectList()
+                .block(RESPONSE_TIMEOUT));
+
+        verify(attachmentRepository, never()).findById(anyLong());
+    }
 
-        verify(attachmentRepository, atMostOnce()).deleteById(1L);
+    @Test
+    void deleteBlobsIfUnusedKeepsSharedBlobsTest() {
+        final var sharedKey = BLOB_KEY.replace('a', 'b');
+        final var modifiedBefore = Instant.now();
+        when(attachmentRepository.findUsedBlobKeys(new String[]{BLOB_KEY, sharedKey}))
+                .thenReturn(Flux.just(sharedKey));
+        when(blobStore.deleteIfModifiedBefore(BLOB_KEY, modifiedBefore)).thenReturn(Mono.just(true));
+
+        assertEquals(List.of(BLOB_KEY), attachmentService.deleteBlobsIfUnused(
+                        List.of(BLOB_KEY, sharedKey), modifiedBefore)
+                .collectList()
+                .block(RESPONSE_TIMEOUT));
+
+        verify(blobStore, never()).deleteIfModifiedBefore(sharedKey, modifiedBefore);
     }
 
     @Test
-    void deleteAttachmentsThrowsNotFoundExceptionTest() {
-        when(attachmentRepository.findById(1L)).thenReturn(Mono.empty());
+    void writeAttachmentContentUsesZeroCopyTest() {
+        final var path = Path.of(BLOB_KEY);
+        final var responseHeaders = new HttpHeaders();
+        final var response = mockZeroCopyResponse(responseHeaders);
+        when(blobStore.findPath(BLOB_KEY)).thenReturn(Optional.of(path));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(path, 0, 5L)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), new HttpHeaders(), response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals(5L, responseHeaders.getContentLength());
+        verify(response).setStatusCode(HttpStatus.OK);
+        verify(blobStore, never()).read(any());
+        verify(response, never()).writeWith(any());
+    }
 
-        assertThatThrownBy(() -> attachmentService.deleteAttachments(List.of(1L)).block(RESPONSE_TIMEOUT))
-                .isInstanceOf(NotFoundException.class)
-                .hasMessage("Не существует вложения с ИД 1");
+    @Test
+    void writeAttachmentContentWritesSingleRangeTest() {
+        final var path = Path.of(BLOB_KEY);
+        final var requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=1-2");
+        final var responseHeaders = new HttpHeaders();
+        final var response = mockZeroCopyResponse(responseHeaders);
+        when(blobStore.findPath(BLOB_KEY)).thenReturn(Optional.of(path));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(path, 1, 2L)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), requestHeaders, response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals(2L, responseHeaders.getContentLength());
+        assertEquals("bytes 1-2/5", responseHeaders.getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(response).setStatusCode(HttpStatus.PARTIAL_CONTENT);
+    }
+
+    @Test
+    void writeAttachmentContentRejectsUnsatisfiableRangeTest() {
+        final var requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-20");
+        final var responseHeaders = new HttpHeaders();
+        final var response = mock(ServerHttpResponse.class);
+        when(response.getHeaders()).thenReturn(responseHeaders);
+        when(response.setComplete()).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), requestHeaders, response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals("bytes */5", responseHeaders.getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(response).setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(blobStore, never()).read(any(), anyLong(), anyLong());
+    }
+
+    private static Flux<PartEvent> createFilePart(String filename, Flux<byte[]> content) {
+        return FilePartEvent.create("attachments", filename, MediaType.APPLICATION_OCTET_STREAM,
+                content.map(DefaultDataBufferFactory.sharedInstance::wrap));
+    }
+
+    @Test
+    void writeAttachmentContentSkipsUnsatisfiableRangesTest() {
+        final var path = Path.of(BLOB_KEY);
+        final var requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=10-20, 1-2");
+        final var responseHeaders = new HttpHeaders();
+        final var response = mockZeroCopyResponse(responseHeaders);
+        when(blobStore.findPath(BLOB_KEY)).thenReturn(Optional.of(path));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(path, 1, 2L)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), requestHeaders, response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals("bytes 1-2/5", responseHeaders.getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(response).setStatusCode(HttpStatus.PARTIAL_CONTENT);
+    }
+
+    @Test
+    void writeAttachmentContentMergesOverlappingRangesTest() {
+        final var path = Path.of(BLOB_KEY);
+        final var requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=1-2, 0-1");
+        final var responseHeaders = new HttpHeaders();
+        final var response = mockZeroCopyResponse(responseHeaders);
+        when(blobStore.findPath(BLOB_KEY)).thenReturn(Optional.of(path));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(path, 0, 3L)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), requestHeaders, response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals(3L, responseHeaders.getContentLength());
+        assertEquals("bytes 0-2/5", responseHeaders.getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(response).setStatusCode(HttpStatus.PARTIAL_CONTENT);
+    }
+
+    @Test
+    void writeAttachmentContentServesWholeContentWhenRangesCoverItTest() {
+        final var path = Path.of(BLOB_KEY);
+        final var requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.RANGE, "bytes=0-2, 3-4");
+        final var responseHeaders = new HttpHeaders();
+        final var response = mockZeroCopyResponse(responseHeaders);
+        when(blobStore.findPath(BLOB_KEY)).thenReturn(Optional.of(path));
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(path, 0, 5L)).thenReturn(Mono.empty());
+
+        assertDoesNotThrow(() -> attachmentService.writeAttachmentContent(
+                        createTestAttachment(), requestHeaders, response)
+                .block(RESPONSE_TIMEOUT));
+
+        assertEquals(5L, responseHeaders.getContentLength());
+        assertNull(responseHeaders.getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(response).setStatusCode(HttpStatus.OK);
+    }
+
+    private static ServerHttpResponse mockZeroCopyResponse(HttpHeaders responseHeaders) {
+        final var response = mock(
+                ServerHttpResponse.class, withSettings().extraInterfaces(ZeroCopyHttpOutputMessage.class));
+        when(response.getHeaders()).thenReturn(responseHeaders);
+        return response;
+    }
 
-        verify(attachmentRepository, never()).deleteById(1L);
+    private static Attachment createTestAttachment() {
+        return new Attachment()
+                .setBlobKey(BLOB_KEY)
+                .setSize(5L)
+                .setExtension(FileExtension.MP3);
     }
 
 }
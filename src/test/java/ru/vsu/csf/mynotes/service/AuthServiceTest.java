@@ -0,0 +1,80 @@
+package ru.vsu.csf.mynotes.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.NoteOwnershipCache;
+import ru.vsu.csf.mynotes.configuration.property.CacheProperties;
+import ru.vsu.csf.mynotes.configuration.security.JwtAuthenticationToken;
+import ru.vsu.csf.mynotes.exception.ForbiddenException;
+import ru.vsu.csf.mynotes.repository.NoteRepository;
+import ru.vsu.csf.mynotes.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthServiceTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final Long NOTE_ID = 1L;
+    private static final String EMAIL = "user@mail.ru";
+    private static final Long USER_ID = 7L;
+
+    private AuthService authService;
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        var cacheProperties = new CacheProperties();
+        cacheProperties.getNoteOwnership().setMaxSize(10);
+        cacheProperties.getNoteOwnership().setTtl(Duration.ofMinutes(1));
+        authService = new AuthService(noteRepository, userRepository, new NoteOwnershipCache(cacheProperties));
+    }
+
+    @Test
+    void checkUsersPermissionCachesAllowedAccessTest() {
+        when(noteRepository.existsByIdAndUserEmail(NOTE_ID, EMAIL)).thenReturn(Mono.just(true));
+
+        assertDoesNotThrow(() -> authService.checkUsersPermission(EMAIL, NOTE_ID).block(RESPONSE_TIMEOUT));
+        assertDoesNotThrow(() -> authService.checkUsersPermission(EMAIL, NOTE_ID).block(RESPONSE_TIMEOUT));
+
+        verify(noteRepository, times(1)).existsByIdAndUserEmail(NOTE_ID, EMAIL);
+    }
+
+    @Test
+    void checkUsersPermissionThrowsForbiddenExceptionTest() {
+        when(noteRepository.existsByIdAndUserEmail(NOTE_ID, EMAIL)).thenReturn(Mono.just(false));
+
+        assertThatThrownBy(() -> authService.checkUsersPermission(EMAIL, NOTE_ID).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(ForbiddenException.class)
+                .hasMessage("Запрещен доступ к заметке");
+        assertThatThrownBy(() -> authService.checkUsersPermission(EMAIL, NOTE_ID).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(ForbiddenException.class);
+
+        verify(noteRepository, times(2)).existsByIdAndUserEmail(NOTE_ID, EMAIL);
+    }
+
+    @Test
+    void getUserIdFromAccessTokenDoesNotQueryDatabaseTest() {
+        var authentication = JwtAuthenticationToken.authenticated("token", USER_ID, EMAIL, List.of());
+
+        assertEquals(USER_ID, authService.getUserId(authentication).block(RESPONSE_TIMEOUT));
+
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+}
@@ -0,0 +1,136 @@
+package ru.vsu.csf.mynotes.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.cache.CredentialsCache;
+import ru.vsu.csf.mynotes.cache.NoteOwnershipCache;
+import ru.vsu.csf.mynotes.configuration.property.NotificationProperties;
+import ru.vsu.csf.mynotes.dictionary.CacheInvalidationType;
+import ru.vsu.csf.mynotes.model.dto.CacheInvalidationEvent;
+import ru.vsu.csf.mynotes.notification.NotificationPublisher;
+import ru.vsu.csf.mynotes.search.NoteSearchIndex;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final Long NOTE_ID = 2L;
+    private static final String EMAIL = "user@mail.ru";
+    private static final String OTHER_INSTANCE = "other-instance";
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+
+    @Mock
+    private NotificationPublisher notificationPublisher;
+
+    @Mock
+    private NoteOwnershipCache noteOwnershipCache;
+
+    @Mock
+    private CredentialsCache credentialsCache;
+
+    @Mock
+    private NoteSearchIndex noteSearchIndex;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NotificationProperties notificationProperties = new NotificationProperties();
+    private CacheInvalidationService cacheInvalidationService;
+
+    @BeforeEach
+    void setUp() {
+        notificationProperties.setEnabled(true);
+        cacheInvalidationService = new CacheInvalidationService(
+                notificationPublisher,
+                notificationProperties,
+                objectMapper,
+                meterRegistry,
+                noteOwnershipCache,
+                credentialsCache,
+                noteSearchIndex);
+    }
+
+    @Test
+    void publishUserChangedSendsTypedEventTest() throws Exception {
+        var payload = ArgumentCaptor.forClass(String.class);
+        when(notificationPublisher.notify(eq(CacheInvalidationService.CHANNEL), payload.capture()))
+                .thenReturn(Mono.empty());
+
+        cacheInvalidationService.publishUserChanged(USER_ID, EMAIL).block(RESPONSE_TIMEOUT);
+
+        var event = objectMapper.readValue(payload.getValue(), CacheInvalidationEvent.class);
+        assertEquals(CacheInvalidationType.USER_CHANGED, event.getType());
+        assertEquals(USER_ID, event.getUserId());
+        assertEquals(EMAIL, event.getEmail());
+        assertNotNull(event.getOrigin());
+        assertNotNull(event.getPublishedAt());
+    }
+
+    @Test
+    void publishDoesNothingWhenNotificationsDisabledTest() {
+        notificationProperties.setEnabled(false);
+
+        cacheInvalidationService.publishUserChanged(USER_ID, EMAIL).block(RESPONSE_TIMEOUT);
+
+        verifyNoInteractions(notificationPublisher);
+    }
+
+    @Test
+    void publishCompletesWhenNotificationFailsTest() {
+        when(notificationPublisher.notify(eq(CacheInvalidationService.CHANNEL), anyString()))
+                .thenReturn(Mono.error(new IllegalStateException("connection closed")));
+
+        assertDoesNotThrow(() -> cacheInvalidationService.publishNoteCreated(USER_ID, NOTE_ID)
+                .block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void applyEvictsLocalCachesAndRecordsLagTest() {
+        cacheInvalidationService.apply(createEvent(CacheInvalidationType.USER_CHANGED, OTHER_INSTANCE));
+        cacheInvalidationService.apply(createEvent(CacheInvalidationType.NOTE_CHANGED, OTHER_INSTANCE));
+
+        verify(credentialsCache).invalidateUser(EMAIL);
+        verify(noteOwnershipCache).invalidateUser(EMAIL);
+        verify(noteSearchIndex).evictUser(USER_ID);
+        verify(noteSearchIndex).evictNote(USER_ID, NOTE_ID);
+        assertEquals(2, meterRegistry.find("mynotes.cache.invalidation.lag").timers().stream()
+                .mapToLong(Timer::count)
+                .sum());
+    }
+
+    @Test
+    void applyIgnoresOwnEventsTest() throws Exception {
+        var payload = ArgumentCaptor.forClass(String.class);
+        when(notificationPublisher.notify(eq(CacheInvalidationService.CHANNEL), payload.capture()))
+                .thenReturn(Mono.empty());
+        cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID).block(RESPONSE_TIMEOUT);
+
+        cacheInvalidationService.apply(objectMapper.readValue(payload.getValue(), CacheInvalidationEvent.class));
+
+        verify(noteSearchIndex, never()).evictNote(USER_ID, NOTE_ID);
+    }
+
+    private static CacheInvalidationEvent createEvent(CacheInvalidationType type, String origin) {
+        return new CacheInvalidationEvent(type, NOTE_ID, USER_ID, EMAIL, origin, System.currentTimeMillis() - 50);
+    }
+
+}
@@ -0,0 +1,88 @@
+package ru.vsu.csf.mynotes.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.test.StepVerifier;
+import ru.vsu.csf.mynotes.configuration.property.NoteEventsProperties;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
+import ru.vsu.csf.mynotes.model.dto.NoteChangeEvent;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NoteEventServiceTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final Long USER_ID = 1L;
+    private static final Long OTHER_USER_ID = 2L;
+
+    private NoteEventService noteEventService;
+
+    @BeforeEach
+    void setUp() {
+        noteEventService = new NoteEventService(createNoteEventsProperties());
+    }
+
+    @Test
+    void publishDeliversEventsOnlyToOwnerTest() {
+        StepVerifier.create(noteEventService.subscribe(USER_ID))
+                .then(() -> {
+                    noteEventService.publish(createEvent(OTHER_USER_ID, 10L));
+                    noteEventService.publish(createEvent(USER_ID, 11L));
+                })
+                .assertNext(event -> assertEquals(11L, event.getNoteId()))
+                .thenCancel()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void slowSubscriberKeepsLatestEventsTest() {
+        StepVerifier.create(noteEventService.subscribe(USER_ID), 0)
+                .then(() -> {
+                    for (long noteId = 1; noteId <= 5; noteId++) {
+                        noteEventService.publish(createEvent(USER_ID, noteId));
+                    }
+                })
+                .thenRequest(2)
+                .assertNext(event -> assertEquals(4L, event.getNoteId()))
+                .assertNext(event -> assertEquals(5L, event.getNoteId()))
+                .thenCancel()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void requestResyncNotifiesAllSubscribersTest() {
+        StepVerifier.create(noteEventService.subscribe(USER_ID))
+                .then(noteEventService::requestResync)
+                .assertNext(event -> {
+                    assertEquals(NoteChangeType.RESYNC, event.getType());
+                    assertEquals(USER_ID, event.getUserId());
+                })
+                .thenCancel()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void streamChangesSendsHeartbeatTest() {
+        StepVerifier.withVirtualTime(() -> noteEventService.streamChanges(USER_ID))
+                .thenAwait(Duration.ofSeconds(15))
+                .assertNext(event -> assertEquals("heartbeat", event.comment()))
+                .thenCancel()
+                .verify(RESPONSE_TIMEOUT);
+    }
+
+    private static NoteChangeEvent createEvent(Long userId, Long noteId) {
+        return new NoteChangeEvent(userId, noteId, noteId, NoteChangeType.RENAMED);
+    }
+
+    private static NoteEventsProperties createNoteEventsProperties() {
+        var properties = new NoteEventsProperties();
+        properties.setBufferSize(2);
+        properties.setOverflowStrategy(BufferOverflowStrategy.DROP_OLDEST);
+        properties.setHeartbeat(Duration.ofSeconds(15));
+        return properties;
+    }
+
+}
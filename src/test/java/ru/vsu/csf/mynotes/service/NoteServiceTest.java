@@ -1,27 +1,71 @@
 package ru.vsu.csf.mynotes.service;
 
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.vsu.csf.mynotes.codec.GzipTextCodec;
+import ru.vsu.csf.mynotes.codec.NoteTextCodec;
+import ru.vsu.csf.mynotes.configuration.property.ApplicationProperties;
+import ru.vsu.csf.mynotes.configuration.property.TextCompressionProperties;
+import ru.vsu.csf.mynotes.dictionary.FileExtension;
+import ru.vsu.csf.mynotes.dictionary.NoteChangeType;
 import ru.vsu.csf.mynotes.exception.BadRequestException;
 import ru.vsu.csf.mynotes.exception.NotFoundException;
+import ru.vsu.csf.mynotes.exception.PreconditionFailedException;
+import ru.vsu.csf.mynotes.model.dto.AttachmentMetadataResponse;
+import ru.vsu.csf.mynotes.model.dto.GetNoteResponse;
+import ru.vsu.csf.mynotes.model.dto.GetNotesBatchRequest;
+import ru.vsu.csf.mynotes.model.dto.NoteContentResponse;
+import ru.vsu.csf.mynotes.model.dto.NoteSearchResult;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextRequest;
+import ru.vsu.csf.mynotes.model.dto.PatchNoteTextResponse;
+import ru.vsu.csf.mynotes.model.dto.TextOperation;
+import ru.vsu.csf.mynotes.model.entity.Attachment;
 import ru.vsu.csf.mynotes.model.entity.Note;
+import ru.vsu.csf.mynotes.model.projection.NoteChange;
+import ru.vsu.csf.mynotes.model.projection.NoteContent;
+import ru.vsu.csf.mynotes.model.projection.NoteDetails;
+import ru.vsu.csf.mynotes.model.projection.NoteMetadata;
+import ru.vsu.csf.mynotes.model.projection.NoteVersion;
+import ru.vsu.csf.mynotes.model.projection.NoteSearchHit;
+import ru.vsu.csf.mynotes.model.projection.NoteSummary;
+import ru.vsu.csf.mynotes.model.projection.PatchedNoteText;
 import ru.vsu.csf.mynotes.repository.NoteAttachmentsRepository;
 import ru.vsu.csf.mynotes.repository.NoteRepository;
+import ru.vsu.csf.mynotes.search.NoteSearchIndex;
 import ru.vsu.csf.mynotes.util.FilePartUtils;
+import ru.vsu.csf.mynotes.util.HashUtils;
+import ru.vsu.csf.mynotes.util.PlainTextUtils;
+import ru.vsu.csf.mynotes.util.VersionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -33,6 +77,8 @@ class NoteServiceTest {
     private static final Long ATTACHMENT_ID1 = 20L;
     private static final Long ATTACHMENT_ID2 = 21L;
     private static final Long USER_ID = 1L;
+    private static final Long VERSION = 3L;
+    private static final String TEXT_HASH = "982d9e3eb996f559e633f4d194def3761d909f5a3b647d1a851fead67c32c9d1";
 
     @InjectMocks
     private NoteService noteService;
@@ -49,133 +95,706 @@ class NoteServiceTest {
     @Mock
     private NoteAttachmentsRepository noteAttachmentsRepository;
 
+    @Mock
+    private ApplicationProperties applicationProperties;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private NoteSearchIndex noteSearchIndex;
+
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Spy
+    private NoteTextCodec noteTextCodec = new NoteTextCodec(List.of(new GzipTextCodec()), createTextCompressionProperties());
+
     @Test
     void createNoteSuccessTest() {
-        when(noteRepository.save(any())).thenReturn(Mono.empty());
+        when(noteRepository.save(any())).thenReturn(Mono.just(createTestNote()));
+        when(noteRepository.touch(NOTE_ID, NoteChangeType.CREATED)).thenReturn(Mono.just(1L));
+        when(cacheInvalidationService.publishNoteCreated(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
 
-        assertDoesNotThrow(() -> noteService.createNote(USER_ID).block(RESPONSE_TIMEOUT));
+        assertEquals(NOTE_ID, noteService.createNote(USER_ID).block(RESPONSE_TIMEOUT));
 
         verify(noteRepository, atMostOnce()).save(any());
+        verify(noteRepository).touch(NOTE_ID, NoteChangeType.CREATED);
+        verify(cacheInvalidationService).publishNoteCreated(USER_ID, NOTE_ID);
     }
 
     @Test
     void changeNoteNameSuccessTest() {
-        final var note = createTestNote();
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(note));
-        when(noteRepository.save(any())).thenReturn(Mono.empty());
+        when(noteRepository.updateName(NOTE_ID, "name1", VERSION))
+                .thenReturn(Mono.just(new NoteVersion(USER_ID, VERSION + 1)));
+        when(cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
 
-        assertDoesNotThrow(() -> noteService.changeNoteName(NOTE_ID, "name1").block(RESPONSE_TIMEOUT));
+        assertEquals(VERSION + 1, noteService.changeNoteName(NOTE_ID, "name1", VERSION).block(RESPONSE_TIMEOUT));
 
-        verify(noteRepository, atMostOnce()).save(any());
+        verify(noteRepository, never()).findById(anyLong());
+        verify(noteRepository, never()).existsById(anyLong());
+        verify(cacheInvalidationService).publishNoteChanged(USER_ID, NOTE_ID);
     }
 
     @Test
     void changeNoteNameThrowsBadRequestExceptionTest() {
-        assertThatThrownBy(() -> noteService.changeNoteName(NOTE_ID, "").block(RESPONSE_TIMEOUT))
+        assertThatThrownBy(() -> noteService.changeNoteName(NOTE_ID, "", null).block(RESPONSE_TIMEOUT))
                 .isInstanceOf(BadRequestException.class)
                 .hasMessage("Имя заметки не может быть пустым");
 
-        verify(noteRepository, never()).save(any());
+        verify(noteRepository, never()).updateName(any(), any(), any());
     }
 
     @Test
     void changeNoteNameThrowsNotFoundExceptionTest() {
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.empty());
+        when(noteRepository.updateName(NOTE_ID, "name1", null)).thenReturn(Mono.empty());
+        when(noteRepository.existsById(NOTE_ID)).thenReturn(Mono.just(false));
 
-        assertThatThrownBy(() -> noteService.changeNoteName(NOTE_ID, "name1").block(RESPONSE_TIMEOUT))
+        assertThatThrownBy(() -> noteService.changeNoteName(NOTE_ID, "name1", null).block(RESPONSE_TIMEOUT))
                 .isInstanceOf(NotFoundException.class)
                 .hasMessage("Не удалось найти заметку с ИД 1");
+    }
 
-        verify(noteRepository, never()).save(any());
+    @Test
+    void changeNoteNameThrowsPreconditionFailedExceptionTest() {
+        when(noteRepository.updateName(NOTE_ID, "name1", VERSION)).thenReturn(Mono.empty());
+        when(noteRepository.existsById(NOTE_ID)).thenReturn(Mono.just(true));
+
+        assertThatThrownBy(() -> noteService.changeNoteName(NOTE_ID, "name1", VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Версия заметки с ИД 1 не совпадает с указанной в If-Match");
+    }
+
+    @Test
+    void attachNoteSuccessTest() {
+        when(noteRepository.updateAttached(NOTE_ID, true, null))
+                .thenReturn(Mono.just(new NoteVersion(USER_ID, VERSION + 1)));
+        when(cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
+
+        assertEquals(VERSION + 1, noteService.attachNote(NOTE_ID, null).block(RESPONSE_TIMEOUT));
+
+        verify(noteRepository, never()).findById(anyLong());
     }
 
     @Test
     void changeNoteTextSuccessTest() {
-        final var note = createTestNote();
         final var dataBufferBytes = "bytes".getBytes();
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(note));
         try (MockedStatic<FilePartUtils> utilities = Mockito.mockStatic(FilePartUtils.class)) {
             utilities.when(() -> FilePartUtils.getByteArray(filePart))
                     .thenReturn(Mono.just(dataBufferBytes));
-            when(noteRepository.save(note.setText(dataBufferBytes))).thenReturn(Mono.empty());
+            when(noteRepository.updateText(
+                    NOTE_ID, dataBufferBytes, null, HashUtils.sha256Hex(dataBufferBytes), "bytes", null))
+                    .thenReturn(Mono.just(new NoteVersion(USER_ID, VERSION + 1)));
+            when(cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
 
-            assertDoesNotThrow(() -> noteService.changeNoteText(NOTE_ID, filePart).block(RESPONSE_TIMEOUT));
+            assertEquals(VERSION + 1, noteService.changeNoteText(NOTE_ID, filePart, null).block(RESPONSE_TIMEOUT));
 
-            verify(noteRepository, atMostOnce()).save(any());
+            verify(noteRepository, never()).findById(anyLong());
         }
     }
 
     @Test
     void changeNoteTextThrowsNotFoundExceptionTest() {
         final var dataBufferBytes = "bytes".getBytes();
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.empty());
+        when(noteRepository.updateText(
+                    NOTE_ID, dataBufferBytes, null, HashUtils.sha256Hex(dataBufferBytes), "bytes", null))
+                .thenReturn(Mono.empty());
+        when(noteRepository.existsById(NOTE_ID)).thenReturn(Mono.just(false));
         try (MockedStatic<FilePartUtils> utilities = Mockito.mockStatic(FilePartUtils.class)) {
             utilities.when(() -> FilePartUtils.getByteArray(filePart))
                     .thenReturn(Mono.just(dataBufferBytes));
 
-            assertThatThrownBy(() -> noteService.changeNoteText(NOTE_ID, filePart).block(RESPONSE_TIMEOUT))
+            assertThatThrownBy(() -> noteService.changeNoteText(NOTE_ID, filePart, null).block(RESPONSE_TIMEOUT))
                     .isInstanceOf(NotFoundException.class)
                     .hasMessage("Не удалось найти заметку с ИД 1");
-
-            verify(noteRepository, never()).save(any());
         }
     }
 
     @Test
     void addAttachmentsToNoteSuccessTest() {
-        final var note = createTestNote();
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(note));
-        when(attachmentService.saveAttachments(List.of(filePart)))
-                .thenReturn(Flux.fromIterable(List.of(ATTACHMENT_ID1, ATTACHMENT_ID2)));
-        when(noteAttachmentsRepository.save(any())).thenReturn(Mono.empty());
+        final var attachments = List.of(new Attachment(), new Attachment());
+        final Flux<PartEvent> parts = Flux.empty();
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(createTestNoteMetadata()));
+        when(attachmentService.storeAttachments(parts)).thenReturn(Mono.just(attachments));
+        when(attachmentService.insertAttachments(attachments))
+                .thenReturn(Flux.just(ATTACHMENT_ID1, ATTACHMENT_ID2));
+        when(noteAttachmentsRepository.insertAll(NOTE_ID, new Long[]{ATTACHMENT_ID1, ATTACHMENT_ID2}))
+                .thenReturn(Flux.just(ATTACHMENT_ID1, ATTACHMENT_ID2));
+        when(noteRepository.touch(NOTE_ID, NoteChangeType.ATTACHMENTS_CHANGED)).thenReturn(Mono.just(1L));
+        when(transactionalOperator.transactional(ArgumentMatchers.<Flux<Object>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        var attachmentIds = noteService.addAttachmentsToNote(NOTE_ID, parts)
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(ATTACHMENT_ID1, ATTACHMENT_ID2), attachmentIds);
+        verify(noteAttachmentsRepository, never()).save(any());
+    }
 
-        assertDoesNotThrow(() -> noteService.addAttachmentsToNote(NOTE_ID, List.of(filePart))
+    @Test
+    void addAttachmentsToNoteReturnsAlreadyLinkedAttachmentsTest() {
+        final var attachments = List.of(new Attachment(), new Attachment());
+        final Flux<PartEvent> parts = Flux.empty();
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(createTestNoteMetadata()));
+        when(attachmentService.storeAttachments(parts)).thenReturn(Mono.just(attachments));
+        when(attachmentService.insertAttachments(attachments))
+                .thenReturn(Flux.just(ATTACHMENT_ID1, ATTACHMENT_ID2));
+        when(noteAttachmentsRepository.insertAll(NOTE_ID, new Long[]{ATTACHMENT_ID1, ATTACHMENT_ID2}))
+                .thenReturn(Flux.just(ATTACHMENT_ID2));
+        when(noteRepository.touch(NOTE_ID, NoteChangeType.ATTACHMENTS_CHANGED)).thenReturn(Mono.just(1L));
+        when(transactionalOperator.transactional(ArgumentMatchers.<Flux<Object>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        var attachmentIds = noteService.addAttachmentsToNote(NOTE_ID, parts)
                 .collectList()
-                .block(RESPONSE_TIMEOUT));
+                .block(RESPONSE_TIMEOUT);
 
-        verify(noteAttachmentsRepository, times(2)).save(any());
+        assertEquals(List.of(ATTACHMENT_ID1, ATTACHMENT_ID2), attachmentIds);
     }
 
     @Test
     void addAttachmentsToNoteThrowsNotFoundExceptionTest() {
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.empty());
-        when(attachmentService.saveAttachments(List.of(filePart)))
-                .thenReturn(Flux.fromIterable(List.of(ATTACHMENT_ID1, ATTACHMENT_ID2)));
+        final Flux<PartEvent> parts = Flux.empty();
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.empty());
+        when(attachmentService.storeAttachments(parts)).thenReturn(Mono.just(List.of()));
 
-        assertThatThrownBy(() -> noteService.addAttachmentsToNote(NOTE_ID, List.of(filePart))
+        assertThatThrownBy(() -> noteService.addAttachmentsToNote(NOTE_ID, parts)
                 .collectList()
                 .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(NotFoundException.class)
                 .hasMessage("Не удалось найти заметку с ИД 1");
 
-        verify(noteAttachmentsRepository, never()).save(any());
+        verify(attachmentService, never()).insertAttachments(any());
     }
 
     @Test
     void deleteAttachmentsSuccessTest() {
-        final var note = createTestNote();
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(note));
-        when(noteAttachmentsRepository.deleteByNoteIdAndAttachmentIdIn(anyLong(), anyList()))
-                .thenReturn(Mono.empty());
-
-        assertDoesNotThrow(() -> noteService.deleteAttachments(NOTE_ID, List.of(ATTACHMENT_ID1, ATTACHMENT_ID2))
-                .block(RESPONSE_TIMEOUT));
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(createTestNoteMetadata()));
+        when(noteRepository.touch(NOTE_ID, NoteChangeType.ATTACHMENTS_CHANGED)).thenReturn(Mono.just(1L));
+        when(noteAttachmentsRepository.deleteAllByNoteId(NOTE_ID, new Long[]{ATTACHMENT_ID1, ATTACHMENT_ID2}))
+                .thenReturn(Flux.just(ATTACHMENT_ID1));
+        when(attachmentService.deleteAttachments(Set.of(ATTACHMENT_ID1))).thenReturn(Flux.just(TEXT_HASH));
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        var response = noteService.deleteAttachments(NOTE_ID, List.of(ATTACHMENT_ID1, ATTACHMENT_ID2, ATTACHMENT_ID1))
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(ATTACHMENT_ID1), response.getRemovedAttachments());
+        assertEquals(List.of(ATTACHMENT_ID2), response.getMissingAttachments());
+        verify(attachmentService, never()).deleteBlobsIfUnused(any(), any());
+    }
 
-        verify(noteAttachmentsRepository, times(1))
-                .deleteByNoteIdAndAttachmentIdIn(anyLong(), anyList());
+    @Test
+    void deleteAttachmentsDoesNotTouchNoteWhenNothingRemovedTest() {
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(createTestNoteMetadata()));
+        when(noteAttachmentsRepository.deleteAllByNoteId(NOTE_ID, new Long[]{ATTACHMENT_ID1}))
+                .thenReturn(Flux.empty());
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        var response = noteService.deleteAttachments(NOTE_ID, List.of(ATTACHMENT_ID1)).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(), response.getRemovedAttachments());
+        assertEquals(List.of(ATTACHMENT_ID1), response.getMissingAttachments());
+        verify(noteRepository, never()).touch(any(), any());
+        verify(attachmentService, never()).deleteAttachments(any());
     }
 
     @Test
     void deleteAttachmentsThrowsNotFoundExceptionTest() {
-        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.empty());
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.empty());
 
         assertThatThrownBy(() -> noteService.deleteAttachments(NOTE_ID, List.of(ATTACHMENT_ID1, ATTACHMENT_ID2))
                     .block(RESPONSE_TIMEOUT))
                 .isInstanceOf(NotFoundException.class)
                 .hasMessage("Не удалось найти заметку с ИД 1");
 
-        verify(noteAttachmentsRepository, never())
-                .deleteByNoteIdAndAttachmentIdIn(anyLong(), anyList());
+        verify(noteAttachmentsRepository, never()).deleteAllByNoteId(anyLong(), any());
+    }
+
+    @Test
+    void patchNoteTextSuccessTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(
+                        new TextOperation(0, 1, "T"),
+                        new TextOperation(4, 0, "ь")));
+        when(noteRepository.patchText(
+                NOTE_ID,
+                VERSION,
+                new Integer[]{0, 4},
+                new Integer[]{1, 0},
+                new Integer[]{1, 2},
+                "Tь".getBytes(StandardCharsets.UTF_8),
+                4))
+                .thenReturn(Mono.just(new PatchedNoteText(USER_ID, "new-hash", "text", VERSION + 1)));
+        when(cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
+
+        var response = noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT);
+
+        assertEquals(new PatchNoteTextResponse(NOTE_ID, "new-hash", VERSION + 1), response);
+        verify(noteRepository, never()).findById(anyLong());
+        verify(noteSearchIndex).onTextChanged(USER_ID, NOTE_ID, "text", VERSION + 1);
+    }
+
+    @Test
+    void patchNoteTextThrowsPreconditionFailedExceptionOnStaleVersionTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(0, 0, "a")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote().setVersion(VERSION + 1)));
+        when(noteRepository.existsById(NOTE_ID)).thenReturn(Mono.just(true));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Версия заметки с ИД 1 не совпадает с указанной в If-Match");
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionWithoutVersionTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(0, 0, "a")));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, null).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Для изменения текста укажите версию заметки в заголовке If-Match");
+
+        verify(noteRepository, never()).patchText(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void patchNoteTextAppliesPatchToCompressedTextTest() {
+        final var text = "<p>note</p>".repeat(200);
+        final var encoded = noteTextCodec.encode(text.getBytes(StandardCharsets.UTF_8));
+        final var patched = ("<h1>" + text.substring(3)).getBytes(StandardCharsets.UTF_8);
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(0, 3, "<h1>")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText(encoded.content())
+                .setTextCodec(encoded.codec())
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+        when(noteRepository.updatePatchedText(
+                NOTE_ID,
+                patched,
+                HashUtils.sha256Hex(patched),
+                PlainTextUtils.fromHtml(patched),
+                VERSION))
+                .thenReturn(Mono.just(new NoteVersion(USER_ID, VERSION + 1)));
+        when(cacheInvalidationService.publishNoteChanged(USER_ID, NOTE_ID)).thenReturn(Mono.empty());
+
+        var response = noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT);
+
+        assertEquals(new PatchNoteTextResponse(NOTE_ID, HashUtils.sha256Hex(patched), VERSION + 1), response);
+        verify(noteRepository, never()).updateText(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patchNoteTextThrowsPreconditionFailedExceptionWhenCompressedTextChangedConcurrentlyTest() {
+        final var encoded = noteTextCodec.encode("<p>note</p>".repeat(200).getBytes(StandardCharsets.UTF_8));
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(0, 3, "<h1>")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText(encoded.content())
+                .setTextCodec(encoded.codec())
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+        when(noteRepository.updatePatchedText(eq(NOTE_ID), any(), any(), any(), eq(VERSION))).thenReturn(Mono.empty());
+        when(noteRepository.existsById(NOTE_ID)).thenReturn(Mono.just(true));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("Версия заметки с ИД 1 не совпадает с указанной в If-Match");
+
+        verify(noteSearchIndex, never()).onTextChanged(any(), any(), any(), any());
+        verify(cacheInvalidationService, never()).publishNoteChanged(any(), any());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionOnSplitCharacterTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(1, 2, "а")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText("Привет".getBytes(StandardCharsets.UTF_8))
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Позиция изменения текста приходится на середину символа");
+
+        verify(noteRepository, never()).updatePatchedText(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionOnSplitCompressedCharacterTest() {
+        final var encoded = noteTextCodec.encode("Привет".repeat(200).getBytes(StandardCharsets.UTF_8));
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(2, 1, "а")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText(encoded.content())
+                .setTextCodec(encoded.codec())
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Позиция изменения текста приходится на середину символа");
+
+        verify(noteRepository, never()).updatePatchedText(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionOnInvalidStoredEncodingTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(0, 0, "a")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt()))
+                .thenReturn(Mono.error(new DataIntegrityViolationException(
+                        "invalid byte sequence for encoding \"UTF8\"",
+                        new R2dbcDataIntegrityViolationException("invalid byte sequence for encoding \"UTF8\"", "22021"))));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Текст заметки с ИД 1 не в кодировке UTF-8, отправьте текст целиком");
+
+        verify(noteRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionOnOverlappingOperationsTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(
+                        new TextOperation(2, 3, "a"),
+                        new TextOperation(4, 0, "b")));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Изменения текста должны идти по возрастанию позиции и не пересекаться");
+
+        verify(noteRepository, never()).patchText(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionWhenPatchEndsAfterTextTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(20, 0, "a")));
+        when(noteRepository.patchText(any(), any(), any(), any(), any(), any(), anyInt())).thenReturn(Mono.empty());
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText("Привет".getBytes(StandardCharsets.UTF_8))
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Изменение текста выходит за пределы текста");
+
+        verify(noteRepository, never()).updatePatchedText(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void patchNoteTextThrowsBadRequestExceptionOnOverflowingOperationTest() {
+        final var request = new PatchNoteTextRequest()
+                .setOperations(List.of(new TextOperation(2, Integer.MAX_VALUE, "a")));
+
+        assertThatThrownBy(() -> noteService.patchNoteText(NOTE_ID, request, VERSION).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Изменение текста выходит за пределы текста");
+
+        verify(noteRepository, never()).patchText(any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getNoteTextServesCompressedTextTest() {
+        final var text = "<p>note</p>".repeat(200).getBytes(StandardCharsets.UTF_8);
+        final var encoded = noteTextCodec.encode(text);
+        final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"));
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(
+                createTestNoteMetadata().setVersion(VERSION).setTextHash(TEXT_HASH).setTextCodec(encoded.codec())));
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText(encoded.content())
+                .setTextCodec(encoded.codec())
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+
+        assertDoesNotThrow(() -> noteService.getNoteText(NOTE_ID, exchange).block(RESPONSE_TIMEOUT));
+
+        assertEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(VersionUtils.toWeakETag(VERSION), exchange.getResponse().getHeaders().getETag());
+        assertArrayEquals(encoded.content(), DataBufferUtils.join(exchange.getResponse().getBody())
+                .map(dataBuffer -> {
+                    var bytes = new byte[dataBuffer.readableByteCount()];
+                    dataBuffer.read(bytes);
+                    return bytes;
+                })
+                .block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void getNoteTextDecodesTextWhenGzipNotAcceptedTest() {
+        final var text = "<p>note</p>".repeat(200);
+        final var encoded = noteTextCodec.encode(text.getBytes(StandardCharsets.UTF_8));
+        final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"));
+        when(noteRepository.findMetadataById(NOTE_ID)).thenReturn(Mono.just(
+                createTestNoteMetadata().setVersion(VERSION).setTextHash(TEXT_HASH).setTextCodec(encoded.codec())));
+        when(noteRepository.findById(NOTE_ID)).thenReturn(Mono.just(createTestNote()
+                .setText(encoded.content())
+                .setTextCodec(encoded.codec())
+                .setTextHash(TEXT_HASH)
+                .setVersion(VERSION)));
+
+        assertDoesNotThrow(() -> noteService.getNoteText(NOTE_ID, exchange).block(RESPONSE_TIMEOUT));
+
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(VersionUtils.toETag(VERSION), exchange.getResponse().getHeaders().getETag());
+        assertEquals(text, exchange.getResponse().getBodyAsString().block(RESPONSE_TIMEOUT));
+    }
+
+    @Test
+    void getNoteTextReturnsNotModifiedTest() {
+        final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/")
+                .ifNoneMatch(VersionUtils.toETag(VERSION)));
+        when(noteRepository.findMetadataById(NOTE_ID))
+                .thenReturn(Mono.just(createTestNoteMetadata().setVersion(VERSION).setTextHash(TEXT_HASH)));
+
+        assertDoesNotThrow(() -> noteService.getNoteText(NOTE_ID, exchange).block(RESPONSE_TIMEOUT));
+
+        assertEquals(HttpStatus.NOT_MODIFIED, exchange.getResponse().getStatusCode());
+        verify(noteRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getNoteByIdReturnsAttachmentMetadataTest() {
+        when(noteRepository.findDetailsById(NOTE_ID)).thenReturn(Mono.just(new NoteDetails(
+                NOTE_ID,
+                "name",
+                true,
+                VERSION,
+                new Long[]{ATTACHMENT_ID1, ATTACHMENT_ID2},
+                new String[]{"PNG", "MP3"},
+                new Long[]{10L, 20L},
+                new String[]{TEXT_HASH, null})));
+
+        var response = noteService.getNoteById(NOTE_ID).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(ATTACHMENT_ID1, ATTACHMENT_ID2), response.getAttachments());
+        assertEquals(
+                List.of(
+                        new AttachmentMetadataResponse(ATTACHMENT_ID1, FileExtension.PNG, 10L, TEXT_HASH),
+                        new AttachmentMetadataResponse(ATTACHMENT_ID2, FileExtension.MP3, 20L, null)),
+                response.getAttachmentDetails());
+        verify(noteRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void getNoteByIdReturnsEmptyAttachmentsTest() {
+        when(noteRepository.findDetailsById(NOTE_ID))
+                .thenReturn(Mono.just(new NoteDetails(NOTE_ID, "name", false, VERSION, null, null, null, null)));
+
+        var response = noteService.getNoteById(NOTE_ID).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(), response.getAttachments());
+        assertEquals(List.of(), response.getAttachmentDetails());
+    }
+
+    @Test
+    void getNoteByIdThrowsNotFoundExceptionTest() {
+        when(noteRepository.findDetailsById(NOTE_ID)).thenReturn(Mono.empty());
+
+        assertThatThrownBy(() -> noteService.getNoteById(NOTE_ID).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Не удалось найти заметку с ИД 1");
+    }
+
+    @Test
+    void getNotesBatchReturnsDecodedTextTest() {
+        final var text = "<p>note</p>".repeat(200);
+        final var encoded = noteTextCodec.encode(text.getBytes(StandardCharsets.UTF_8));
+        when(applicationProperties.getMaxNotesPageSize()).thenReturn(500);
+        when(noteRepository.findContentsByUserIdAndIdIn(USER_ID, new Long[]{NOTE_ID, 2L}, true))
+                .thenReturn(Flux.just(
+                        new NoteContent(NOTE_ID, "a", false, VERSION, 5L, TEXT_HASH, encoded.content(), encoded.codec(),
+                                new Long[]{ATTACHMENT_ID1}, new String[]{"PNG"}, new Long[]{10L}, new String[]{null}),
+                        new NoteContent(2L, "b", true, 0L, 6L, null, null, null, null, null, null, null)));
+
+        var notes = noteService.getNotesBatch(
+                        USER_ID, new GetNotesBatchRequest(List.of(NOTE_ID, 2L, NOTE_ID), true))
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(text, notes.get(0).getText());
+        assertEquals(TEXT_HASH, notes.get(0).getTextHash());
+        assertEquals(
+                List.of(new AttachmentMetadataResponse(ATTACHMENT_ID1, FileExtension.PNG, 10L, null)),
+                notes.get(0).getAttachmentDetails());
+        assertNull(notes.get(1).getText());
+        assertEquals(List.of(), notes.get(1).getAttachmentDetails());
+    }
+
+    @Test
+    void getNotesBatchThrowsBadRequestExceptionOnEmptyIdsTest() {
+        when(applicationProperties.getMaxNotesPageSize()).thenReturn(500);
+
+        assertThatThrownBy(() -> noteService.getNotesBatch(USER_ID, new GetNotesBatchRequest(List.of(), false))
+                    .blockLast(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Количество заметок в запросе должно быть от 1 до 500");
+    }
+
+    @Test
+    void getNotesBatchThrowsBadRequestExceptionOnNullIdsTest() {
+        when(applicationProperties.getMaxNotesPageSize()).thenReturn(500);
+
+        assertThatThrownBy(() -> noteService.getNotesBatch(USER_ID, new GetNotesBatchRequest(null, false))
+                    .blockLast(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Количество заметок в запросе должно быть от 1 до 500");
+    }
+
+    @Test
+    void getNoteChangesReturnsChangesAfterSinceTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteRepository.findChangesByUserIdAfter(USER_ID, 4L, 3)).thenReturn(Flux.just(
+                new NoteChange(NOTE_ID, "a", false, VERSION, TEXT_HASH, 5L,
+                        new Long[]{ATTACHMENT_ID1}, new String[]{"GIF"}, new Long[]{10L}, new String[]{TEXT_HASH}),
+                new NoteChange(2L, "b", true, 0L, null, 7L, null, null, null, null),
+                new NoteChange(3L, "c", true, 0L, null, 8L, null, null, null, null)));
+
+        var response = noteService.getNoteChanges(USER_ID, 4L, null).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(NOTE_ID, 2L), response.getNotes().stream().map(NoteContentResponse::getId).toList());
+        assertEquals(
+                List.of(new AttachmentMetadataResponse(ATTACHMENT_ID1, FileExtension.GIF, 10L, TEXT_HASH)),
+                response.getNotes().get(0).getAttachmentDetails());
+        assertEquals(7L, response.getChangeSeq());
+        assertEquals(true, response.getHasMore());
+    }
+
+    @Test
+    void getNoteChangesKeepsSinceWhenNothingChangedTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteRepository.findChangesByUserIdAfter(USER_ID, 9L, 3)).thenReturn(Flux.empty());
+
+        var response = noteService.getNoteChanges(USER_ID, 9L, null).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(), response.getNotes());
+        assertEquals(9L, response.getChangeSeq());
+        assertEquals(false, response.getHasMore());
+    }
+
+    @Test
+    void getNoteChangesThrowsBadRequestExceptionOnNegativeSinceTest() {
+        assertThatThrownBy(() -> noteService.getNoteChanges(USER_ID, -1L, null).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Номер изменения не может быть отрицательным");
+    }
+
+    @Test
+    void getNotesReturnsNextCursorTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteRepository.findSummariesByUserId(USER_ID, 3)).thenReturn(Flux.just(
+                new NoteSummary(3L, "a", true, 0L),
+                new NoteSummary(1L, "b", false, 0L),
+                new NoteSummary(2L, "c", false, 0L)));
+        when(noteRepository.findSummariesByUserIdAfter(USER_ID, false, 1L, 3))
+                .thenReturn(Flux.just(new NoteSummary(2L, "c", false, 0L)));
+
+        var firstPage = noteService.getNotes(USER_ID, null, null).block(RESPONSE_TIMEOUT);
+        var secondPage = noteService.getNotes(USER_ID, null, firstPage.getNextCursor()).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(3L, 1L), firstPage.getNotes().stream().map(GetNoteResponse::getId).toList());
+        assertEquals(List.of(2L), secondPage.getNotes().stream().map(GetNoteResponse::getId).toList());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void getNotesThrowsBadRequestExceptionOnInvalidCursorTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+
+        assertThatThrownBy(() -> noteService.getNotes(USER_ID, null, "invalid").block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Некорректный курсор: invalid");
+    }
+
+    @Test
+    void getNotesThrowsBadRequestExceptionOnTooLargeLimitTest() {
+        when(applicationProperties.getMaxNotesPageSize()).thenReturn(500);
+
+        assertThatThrownBy(() -> noteService.getNotes(USER_ID, 501, null).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Размер страницы должен быть от 1 до 500");
+    }
+
+    @Test
+    void searchNotesReturnsNextCursorTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteRepository.searchByUserId(USER_ID, "заметка", 3)).thenReturn(Flux.just(
+                new NoteSearchHit(3L, "a", false, 0L, 0.6f, "<b>заметка</b>"),
+                new NoteSearchHit(1L, "b", false, 0L, 0.3f, "<b>заметка</b>"),
+                new NoteSearchHit(2L, "c", true, 0L, 0.3f, "<b>заметка</b>")));
+        when(noteRepository.searchByUserIdAfter(USER_ID, "заметка", 0.3f, 1L, 3))
+                .thenReturn(Flux.just(new NoteSearchHit(2L, "c", true, 0L, 0.3f, "<b>заметка</b>")));
+
+        var firstPage = noteService.searchNotes(USER_ID, "заметка", null, null).block(RESPONSE_TIMEOUT);
+        var secondPage = noteService.searchNotes(USER_ID, "заметка", null, firstPage.getNextCursor())
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(3L, 1L), firstPage.getNotes().stream().map(NoteSearchResult::getId).toList());
+        assertEquals(List.of(2L), secondPage.getNotes().stream().map(NoteSearchResult::getId).toList());
+        assertEquals("<b>заметка</b>", secondPage.getNotes().get(0).getSnippet());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void searchNotesThrowsBadRequestExceptionOnBlankQueryTest() {
+        assertThatThrownBy(() -> noteService.searchNotes(USER_ID, " ", null, null).block(RESPONSE_TIMEOUT))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Поисковый запрос не может быть пустым");
+    }
+
+    @Test
+    void suggestNotesFallsBackToDatabaseSearchTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteRepository.searchByUserId(USER_ID, "зам", 2)).thenReturn(Flux.just(
+                new NoteSearchHit(3L, "a", false, 0L, 0.6f, "<b>заметка</b>")));
+
+        var notes = noteService.suggestNotes(USER_ID, "зам", null).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(3L), notes.stream().map(GetNoteResponse::getId).toList());
+        verify(noteSearchIndex, never()).search(any(), any(), anyInt());
+    }
+
+    @Test
+    void suggestNotesUsesInMemoryIndexTest() {
+        when(applicationProperties.getNotesPageSize()).thenReturn(2);
+        when(noteSearchIndex.isEnabled()).thenReturn(true);
+        when(noteSearchIndex.search(USER_ID, "зам", 2))
+                .thenReturn(Mono.just(List.of(new NoteSummary(3L, "заметка", true, 0L))));
+
+        var notes = noteService.suggestNotes(USER_ID, "зам", null).block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(3L), notes.stream().map(GetNoteResponse::getId).toList());
+        verify(noteRepository, never()).searchByUserId(any(), any(), anyInt());
+    }
+
+    @Test
+    void streamNotesSuccessTest() {
+        when(noteRepository.streamSummariesByUserId(USER_ID)).thenReturn(Flux.just(
+                new NoteSummary(3L, "a", true, 0L),
+                new NoteSummary(1L, "b", false, 0L)));
+
+        var notes = noteService.streamNotes(USER_ID).collectList().block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(3L, 1L), notes.stream().map(GetNoteResponse::getId).toList());
+        assertEquals(true, notes.get(0).getIsAttached());
     }
 
     private static Note createTestNote() {
@@ -185,4 +804,17 @@ class NoteServiceTest {
                 .setText("text".getBytes());
     }
 
-}
\ No newline at end of file
+    private static NoteMetadata createTestNoteMetadata() {
+        return new NoteMetadata()
+                .setId(NOTE_ID)
+                .setName("name");
+    }
+
+    private static TextCompressionProperties createTextCompressionProperties() {
+        var properties = new TextCompressionProperties();
+        properties.setCodec("gzip");
+        properties.setThreshold(1024);
+        return properties;
+    }
+
+}
@@ -0,0 +1,83 @@
+package ru.vsu.csf.mynotes.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.vsu.csf.mynotes.configuration.property.JwtProperties;
+import ru.vsu.csf.mynotes.exception.UnauthorizedException;
+import ru.vsu.csf.mynotes.model.entity.User;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenServiceTest {
+
+    private static final Long USER_ID = 7L;
+    private static final String EMAIL = "user@mail.ru";
+    private static final String SECRET = "test-secret-for-signing-access-tokens";
+
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        var jwtProperties = new JwtProperties();
+        jwtProperties.setSecret(SECRET);
+        jwtProperties.setIssuer("mynotes");
+        jwtProperties.setAccessTokenTtl(Duration.ofMinutes(15));
+        jwtProperties.setRefreshTokenTtl(Duration.ofDays(30));
+        tokenService = new TokenService(jwtProperties);
+    }
+
+    @Test
+    void jwtPropertiesRejectShortSecretTest() {
+        var jwtProperties = new JwtProperties();
+        jwtProperties.setSecret("secret");
+
+        try (var validatorFactory = Validation.buildDefaultValidatorFactory()) {
+            var violations = validatorFactory.getValidator().validate(jwtProperties);
+
+            assertEquals(1, violations.size());
+        }
+    }
+
+    @Test
+    void issueTokensSuccessTest() {
+        var response = tokenService.issueTokens(createTestUser());
+
+        var accessToken = tokenService.verifyAccessToken(response.getAccessToken());
+        var refreshToken = tokenService.verifyRefreshToken(response.getRefreshToken());
+
+        assertEquals(USER_ID, response.getId());
+        assertEquals(900L, response.getExpiresIn());
+        assertEquals(EMAIL, accessToken.getSubject());
+        assertEquals(USER_ID, accessToken.getClaim(TokenService.USER_ID_CLAIM).asLong());
+        assertEquals(USER_ID, refreshToken.getClaim(TokenService.USER_ID_CLAIM).asLong());
+    }
+
+    @Test
+    void verifyAccessTokenRejectsRefreshTokenTest() {
+        var response = tokenService.issueTokens(createTestUser());
+
+        assertThatThrownBy(() -> tokenService.verifyAccessToken(response.getRefreshToken()))
+                .isInstanceOf(UnauthorizedException.class)
+                .hasMessage("Недействительный токен");
+    }
+
+    @Test
+    void verifyAccessTokenRejectsTamperedTokenTest() {
+        var response = tokenService.issueTokens(createTestUser());
+
+        assertThatThrownBy(() -> tokenService.verifyAccessToken(response.getAccessToken() + "x"))
+                .isInstanceOf(UnauthorizedException.class);
+    }
+
+    private static User createTestUser() {
+        return new User()
+                .setId(USER_ID)
+                .setEmail(EMAIL)
+                .setRole("USER");
+    }
+
+}
@@ -0,0 +1,143 @@
+package ru.vsu.csf.mynotes.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import ru.vsu.csf.mynotes.configuration.property.BlobStoreProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBlobStoreTest {
+
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofMillis(5_000);
+    private static final String CONTENT = "hello";
+    private static final String CONTENT_HASH = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @TempDir
+    private Path root;
+
+    private LocalBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new BlobStoreProperties();
+        properties.setPath(root.toString());
+        properties.setReadBufferSize(2);
+        blobStore = new LocalBlobStore(properties);
+    }
+
+    @Test
+    void storeSuccessTest() {
+        var blob = blobStore.store(Flux.just(wrap("hel"), wrap("lo"))).block(RESPONSE_TIMEOUT);
+
+        assertNotNull(blob);
+        assertEquals(CONTENT_HASH, blob.key());
+        assertEquals(CONTENT.length(), blob.size());
+        assertTrue(Files.exists(root.resolve("2c").resolve("f2").resolve(CONTENT_HASH)));
+        assertEquals(CONTENT, read(blob.key()));
+    }
+
+    @Test
+    void storeSameContentTwiceKeepsSingleFileTest() {
+        var first = blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+        var second = blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+
+        assertEquals(first, second);
+        assertEquals(CONTENT, read(CONTENT_HASH));
+    }
+
+    @Test
+    void storeRemovesTempFileOnErrorTest() {
+        assertThrows(IllegalStateException.class, () -> blobStore.store(
+                        Flux.concat(Flux.just(wrap(CONTENT)), Flux.error(new IllegalStateException())))
+                .block(RESPONSE_TIMEOUT));
+
+        assertFalse(Files.exists(root.resolve("2c")));
+        assertEquals(0, root.resolve("tmp").toFile().list().length);
+    }
+
+    @Test
+    void readRangeSuccessTest() {
+        blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+
+        var range = DataBufferUtils.join(blobStore.read(CONTENT_HASH, 1, 3))
+                .map(dataBuffer -> dataBuffer.toString(StandardCharsets.UTF_8))
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals("ell", range);
+    }
+
+    @Test
+    void deleteIfModifiedBeforeKeepsRecentlyStoredBlobTest() throws Exception {
+        blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+        var path = blobStore.resolve(CONTENT_HASH);
+        var threshold = Instant.now().minus(Duration.ofHours(1));
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+
+        assertFalse(blobStore.deleteIfModifiedBefore(CONTENT_HASH, threshold).block(RESPONSE_TIMEOUT));
+        assertTrue(Files.exists(path));
+
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        assertTrue(blobStore.deleteIfModifiedBefore(CONTENT_HASH, threshold).block(RESPONSE_TIMEOUT));
+        assertFalse(Files.exists(path));
+    }
+
+    private String read(String key) {
+        return DataBufferUtils.join(blobStore.read(key))
+                .map(dataBuffer -> dataBuffer.toString(StandardCharsets.UTF_8))
+                .block(RESPONSE_TIMEOUT);
+    }
+
+    @Test
+    void findModifiedBeforeSkipsRecentBlobsTest() throws Exception {
+        blobStore.store(Flux.just(wrap(CONTENT))).block(RESPONSE_TIMEOUT);
+        var path = root.resolve("2c").resolve("f2").resolve(CONTENT_HASH);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        var staleBlobs = blobStore.findModifiedBefore("2c", Instant.now().minus(Duration.ofHours(1)))
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+        var recentBlobs = blobStore.findModifiedBefore("2c", Instant.now().minus(Duration.ofDays(2)))
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+        var otherShardBlobs = blobStore.findModifiedBefore("2d", Instant.now().minus(Duration.ofHours(1)))
+                .collectList()
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(List.of(new StoredBlob(CONTENT_HASH, CONTENT.length())), staleBlobs);
+        assertTrue(recentBlobs.isEmpty());
+        assertTrue(otherShardBlobs.isEmpty());
+    }
+
+    @Test
+    void deleteTemporaryFilesModifiedBeforeTest() throws Exception {
+        var tempFile = Files.createDirectories(root.resolve("tmp")).resolve("upload.part");
+        Files.writeString(tempFile, CONTENT);
+        Files.setLastModifiedTime(tempFile, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        var reclaimed = blobStore.deleteTemporaryFilesModifiedBefore(Instant.now().minus(Duration.ofHours(1)))
+                .block(RESPONSE_TIMEOUT);
+
+        assertEquals(CONTENT.length(), reclaimed);
+        assertFalse(Files.exists(tempFile));
+    }
+
+    private static DataBuffer wrap(String content) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,27 @@
+package ru.vsu.csf.mynotes.util;
+
+import org.junit.jupiter.api.Test;
+import ru.vsu.csf.mynotes.exception.BadRequestException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VersionUtilsTest {
+
+    private static final long VERSION = 3L;
+
+    @Test
+    void parseIfMatchAcceptsStrongAndWeakETagTest() {
+        assertEquals(VERSION, VersionUtils.parseIfMatch(VersionUtils.toETag(VERSION)));
+        assertEquals(VERSION, VersionUtils.parseIfMatch(VersionUtils.toWeakETag(VERSION)));
+        assertNull(VersionUtils.parseIfMatch("*"));
+    }
+
+    @Test
+    void parseIfMatchRejectsHashETagTest() {
+        assertThatThrownBy(() -> VersionUtils.parseIfMatch(HashUtils.toETag("abc")))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+}
@@ -3,7 +3,8 @@ CREATE TABLE IF NOT EXISTS user_info(
     login VARCHAR(100) NOT NULL,
     password_hash VARCHAR(100) NOT NULL,
     email VARCHAR(200) NOT NULL UNIQUE,
-    role VARCHAR(100) NOT NULL DEFAULT 'USER'
+    role VARCHAR(100) NOT NULL DEFAULT 'USER',
+    change_seq BIGINT NOT NULL DEFAULT 0
 );
 CREATE UNIQUE INDEX user_info_email_index ON user_info(email);
 
@@ -11,15 +12,33 @@ CREATE TABLE IF NOT EXISTS note(
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     name VARCHAR(100),
     text BYTEA,
-    is_attached BOOLEAN DEFAULT FALSE,
-    user_id INTEGER NOT NULL REFERENCES user_info(id)
+    is_attached BOOLEAN NOT NULL DEFAULT FALSE,
+    user_id INTEGER NOT NULL REFERENCES user_info(id),
+    text_hash VARCHAR(64),
+    version BIGINT NOT NULL DEFAULT 0,
+    text_codec VARCHAR(16),
+    plain_text TEXT,
+    change_seq BIGINT NOT NULL DEFAULT 0,
+    text_patched_at TIMESTAMPTZ,
+    text_vector TSVECTOR,
+    search_document TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', COALESCE(name, '')), 'A') || COALESCE(text_vector, ''::tsvector)) STORED
 );
+CREATE INDEX note_user_id_is_attached_id_index ON note(user_id, is_attached DESC, id);
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+CREATE INDEX note_user_id_search_document_index ON note USING GIN (user_id, search_document);
+CREATE INDEX note_user_id_change_seq_index ON note(user_id, change_seq);
+CREATE INDEX note_text_patched_at_index ON note(text_patched_at) WHERE text_patched_at IS NOT NULL;
 
 CREATE TABLE IF NOT EXISTS attachment(
     id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     file BYTEA,
-    extension VARCHAR(6)
+    extension VARCHAR(6),
+    blob_key VARCHAR(64),
+    size BIGINT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+CREATE UNIQUE INDEX attachment_blob_key_extension_index ON attachment(blob_key, extension);
 
 ALTER TABLE attachment
 ADD CONSTRAINT attachment_extension_constraint CHECK ( extension in ('PNG', 'JPEG', 'JPG', 'MP3', 'GIF'));
@@ -29,3 +48,5 @@ CREATE TABLE IF NOT EXISTS note_attachments(
     note_id INTEGER NOT NULL REFERENCES note(id),
     attachment_id INTEGER NOT NULL REFERENCES attachment(id)
 );
+CREATE INDEX note_attachments_attachment_id_index ON note_attachments(attachment_id);
+CREATE UNIQUE INDEX note_attachments_note_id_attachment_id_index ON note_attachments(note_id, attachment_id);